@@ -0,0 +1,163 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.stream.JsonReader;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Interval;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.Stream;
+
+/**
+ * Checks that intervals read with {@link Interval#parse(JsonReader, FlatJsonObject)} are the same as
+ * the ones read through a {@link JSONObject}, and compares how long both take and how much they
+ * allocate. Runs on a device, where org.json is the real one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IntervalPullParserTest {
+    private static final String TAG = "IntervalPullParserTest";
+
+    // lines as written by iperf3 --json-stream: a TCP --bidir run with 2 streams each way, and a UDP download
+    private static final String[] LINES = {
+            "{\"event\":\"interval\",\"data\":{\"streams\":[{\"socket\":5,\"start\":0,\"end\":1.000048,\"seconds\":1.000048017501831,\"bytes\":3276800,\"bits_per_second\":26213141.4,\"retransmits\":12,\"snd_cwnd\":88872,\"snd_wnd\":3145728,\"rtt\":37650,\"rttvar\":4123,\"pmtu\":1500,\"omitted\":false,\"sender\":true},"
+                    + "{\"socket\":7,\"start\":0,\"end\":1.000048,\"seconds\":1.000048017501831,\"bytes\":2883584,\"bits_per_second\":23067565.5,\"retransmits\":0,\"snd_cwnd\":64400,\"snd_wnd\":3145728,\"rtt\":41002,\"rttvar\":5811,\"pmtu\":1500,\"omitted\":false,\"sender\":true},"
+                    + "{\"socket\":9,\"start\":0,\"end\":1.000102,\"seconds\":1.000102043151855,\"bytes\":10485760,\"bits_per_second\":83877528.3,\"omitted\":false,\"sender\":false},"
+                    + "{\"socket\":11,\"start\":0,\"end\":1.000102,\"seconds\":1.000102043151855,\"bytes\":9961472,\"bits_per_second\":79683652.1,\"omitted\":false,\"sender\":false}],"
+                    + "\"sum\":{\"start\":0,\"end\":1.000048,\"seconds\":1.000048017501831,\"bytes\":6160384,\"bits_per_second\":49280706.9,\"retransmits\":12,\"omitted\":false,\"sender\":true},"
+                    + "\"sum_bidir_reverse\":{\"start\":0,\"end\":1.000102,\"seconds\":1.000102043151855,\"bytes\":20447232,\"bits_per_second\":163561180.4,\"omitted\":false,\"sender\":false}}}",
+            "{\"event\":\"interval\",\"data\":{\"streams\":[{\"socket\":5,\"start\":1.000048,\"end\":2.000113,\"seconds\":1.0000650882720947,\"bytes\":4194304,\"bits_per_second\":33552247.2,\"retransmits\":3,\"snd_cwnd\":102312,\"snd_wnd\":3145728,\"rtt\":35120,\"rttvar\":2210,\"pmtu\":1500,\"omitted\":false,\"sender\":true},"
+                    + "{\"socket\":9,\"start\":1.000102,\"end\":2.000187,\"seconds\":1.0000849962234497,\"bytes\":12058624,\"bits_per_second\":96460792.6,\"omitted\":false,\"sender\":false}],"
+                    + "\"sum\":{\"start\":1.000048,\"end\":2.000113,\"seconds\":1.0000650882720947,\"bytes\":4194304,\"bits_per_second\":33552247.2,\"retransmits\":3,\"omitted\":false,\"sender\":true},"
+                    + "\"sum_bidir_reverse\":{\"start\":1.000102,\"end\":2.000187,\"seconds\":1.0000849962234497,\"bytes\":12058624,\"bits_per_second\":96460792.6,\"omitted\":false,\"sender\":false}}}",
+            "{\"event\":\"interval\",\"data\":{\"streams\":[{\"socket\":5,\"start\":0,\"end\":1.000183,\"seconds\":1.000182986259460,\"bytes\":131072,\"bits_per_second\":1048384.2,\"jitter_ms\":0.412,\"lost_packets\":2,\"packets\":91,\"lost_percent\":2.197802197802198,\"omitted\":false,\"sender\":false}],"
+                    + "\"sum\":{\"start\":0,\"end\":1.000183,\"seconds\":1.000182986259460,\"bytes\":131072,\"bits_per_second\":1048384.2,\"jitter_ms\":0.412,\"lost_packets\":2,\"packets\":91,\"lost_percent\":2.197802197802198,\"omitted\":false,\"sender\":false}}}",
+    };
+
+    private static Interval parseTree(String line) throws Exception {
+        Interval interval = new Interval();
+        interval.parse(new JSONObject(line).getJSONObject("data"));
+        return interval;
+    }
+
+    private static Interval parsePull(String line, FlatJsonObject scratch) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new StringReader(line));
+        reader.beginObject();
+        assertEquals("event", reader.nextName());
+        assertEquals("interval", reader.nextString());
+        assertEquals("data", reader.nextName());
+        Interval interval = new Interval();
+        interval.parse(reader, scratch);
+        return interval;
+    }
+
+    /**
+     * Every field of the object and its superclasses, by reflection, so nothing is left out
+     */
+    private static String describe(Object object) throws IllegalAccessException {
+        if (object == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(object.getClass().getSimpleName()).append('{');
+        for (Class<?> c = object.getClass(); c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                sb.append(c.getSimpleName()).append('.').append(field.getName()).append('=')
+                        .append(field.get(object)).append(", ");
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String describe(Interval interval) throws IllegalAccessException {
+        StringBuilder sb = new StringBuilder();
+        for (Stream stream : interval.getStreams().getStreamArrayList()) {
+            sb.append(describe(stream)).append('\n');
+        }
+        sb.append(describe(interval.getSum())).append('\n');
+        sb.append(describe(interval.getSumBidirReverse()));
+        return sb.toString();
+    }
+
+    @Test
+    public void pullParser_givesTheSameIntervals() throws Exception {
+        FlatJsonObject scratch = new FlatJsonObject();
+        for (String line : LINES) {
+            Interval tree = parseTree(line);
+            Interval pull = parsePull(line, scratch);
+            assertTrue(tree.getStreams().size() > 0);
+            assertEquals(describe(tree), describe(pull));
+        }
+    }
+
+    private interface LineParser {
+        void parse(String line) throws Exception;
+    }
+
+    /**
+     * Parse every line {@code rounds} times, once timed and once counting this thread's allocations
+     *
+     * @return ns, allocated objects and allocated bytes, per line
+     */
+    @SuppressWarnings("deprecation")
+    private static long[] measure(int rounds, LineParser parser) throws Exception {
+        int lines = rounds * LINES.length;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (String line : LINES) {
+                parser.parse(line);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        // counting slows allocations down, so it gets a run of its own
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < rounds; i++) {
+                for (String line : LINES) {
+                    parser.parse(line);
+                }
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return new long[]{nanos / lines, Debug.getThreadAllocCount() / lines, Debug.getThreadAllocSize() / lines};
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        final int rounds = 2000;
+        FlatJsonObject scratch = new FlatJsonObject();
+        // warm up both paths first
+        for (int i = 0; i < rounds / 4; i++) {
+            for (String line : LINES) {
+                parseTree(line);
+                parsePull(line, scratch);
+            }
+        }
+        long[] tree = measure(rounds, IntervalPullParserTest::parseTree);
+        long[] pull = measure(rounds, line -> parsePull(line, scratch));
+        Log.i(TAG, String.format("JSONObject: %d ns, %d objects, %d bytes per line; "
+                        + "JsonReader: %d ns, %d objects, %d bytes per line; over %d lines",
+                tree[0], tree[1], tree[2], pull[0], pull[1], pull[2], rounds * LINES.length));
+    }
+}
@@ -15,6 +15,18 @@ public class CloudCityConstants {
 
     public static final String CLOUD_CITY_GENERAL_LOGGING = "enable_logging";
     public static final String CLOUD_CITY_CC_LOGGING = "enable_cloud_city";
+    /**
+     * Name of the preference for how many Cloud City samples are collected before they're sent in one request
+     */
+    public static final String CLOUD_CITY_BATCH_EVENTS = "cloud_city_batch_events";
+    /**
+     * Name of the preference for how many seconds Cloud City samples are collected at most before they're sent
+     */
+    public static final String CLOUD_CITY_BATCH_SECONDS = "cloud_city_batch_seconds";
+    /**
+     * Name of the preference for compressing Cloud City uploads with gzip
+     */
+    public static final String CLOUD_CITY_GZIP = "cloud_city_gzip";
 
 
     // Iperf3Fragment constants
@@ -0,0 +1,124 @@
+package cloudcity;
+
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import cloudcity.networking.UploadCircuitBreaker;
+import cloudcity.networking.models.NetworkDataModel;
+import cloudcity.networking.outbox.CloudCityOutbox;
+import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.GlobalVars;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LoggingSink;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LoggingSnapshot;
+
+/**
+ * Sends the Cloud City part of every sample to the Cloud City server, and shows the outcome in the
+ * logging status icon.
+ * <p>
+ * Samples go through the {@link CloudCityOutbox}, so samples taken while offline are sent once the
+ * device is back online. They're collected until there are enough for a batch or the batch window is
+ * over, whichever comes first, and then sent together in one request. Closing the sink sends what's
+ * still collected.
+ * <p>
+ * Sending doesn't wait for the server: {@link #write(LoggingSnapshot)} only starts the requests, and
+ * the status icon is updated on the main thread once they're done, so a slow server never holds back
+ * the samples behind it.
+ */
+public class CloudCitySink implements LoggingSink {
+    public static final String NAME = "CloudCity";
+    private static final String TAG = "CloudCitySink";
+
+    private final GlobalVars gv;
+    private final CloudCityOutbox outbox;
+    private final int batchEvents;
+    private final long batchWindowMillis;
+    private long lastSend = SystemClock.elapsedRealtime();
+
+    /**
+     * @param gv                for the logging status icon
+     * @param outbox            the outbox to queue the samples in
+     * @param batchEvents       send once this many samples are queued, and at most this many in one
+     *                          request
+     * @param batchWindowMillis send at the latest this long after the last time
+     */
+    public CloudCitySink(@NonNull GlobalVars gv, @NonNull CloudCityOutbox outbox, int batchEvents, long batchWindowMillis) {
+        this.gv = gv;
+        this.outbox = outbox;
+        this.batchEvents = Math.max(1, batchEvents);
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @NonNull
+    @Override
+    public Set<Part> getRequiredParts() {
+        return EnumSet.of(Part.CLOUD_CITY_DATA);
+    }
+
+    @Override
+    public void write(@NonNull LoggingSnapshot snapshot) {
+        NetworkDataModel data = snapshot.getCloudCityData();
+        if (data == null) {
+            CloudCityLogger.e(TAG, "write: Error in getting data from Cloud city, skipping sending");
+            return;
+        }
+        outbox.enqueue(data);
+        long now = SystemClock.elapsedRealtime();
+        if (outbox.getDepth() < batchEvents && now - lastSend < batchWindowMillis) {
+            return;
+        }
+        lastSend = now;
+        send();
+    }
+
+    /**
+     * Send what's still collected, so stopping doesn't keep it waiting until the next start
+     */
+    @Override
+    public void close() {
+        if (outbox.getDepth() > 0) {
+            send();
+        }
+    }
+
+    private void send() {
+        if (!outbox.isOnline()) {
+            // no point in trying, the outbox keeps the sample until the device is back online
+            showStatus(false);
+            return;
+        }
+        String address = CloudCityParamsRepository.getInstance().getServerUrl();
+        String token = CloudCityParamsRepository.getInstance().getServerToken();
+
+        CloudCityLogger.d(TAG, "sending data at addr=" + address + ", token=" + token + ", " + outbox + ", " + UploadCircuitBreaker.getInstance());
+
+        outbox.drain(address, token, batchEvents, this::showStatus);
+    }
+
+    private void showStatus(boolean status) {
+        MainThreadExecutor.getInstance().execute(() -> setStatus(status));
+    }
+
+    private void setStatus(boolean status) {
+        ImageView logStatus = gv.getLog_status();
+        if (logStatus != null) {
+            if (status) {
+                /* Data sent successfully indicate in status icon. */
+                logStatus.setColorFilter(Color.argb(255, 0, 255, 0));
+            } else {
+                logStatus.setColorFilter(Color.argb(255, 255, 0, 0));
+            }
+        }
+    }
+}
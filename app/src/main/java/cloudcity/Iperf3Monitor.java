@@ -5,7 +5,6 @@ import android.location.Location;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.HandlerThread;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.Observer;
@@ -19,8 +18,6 @@ import com.google.common.util.concurrent.ListenableFuture;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -38,13 +35,12 @@ import cloudcity.dataholders.Iperf3RunnerData;
 import cloudcity.dataholders.Iperf3MetricsPOJO;
 import cloudcity.dataholders.PingMetricsPOJO;
 import cloudcity.util.CloudCityLogger;
-import cloudcity.util.CloudCityUtil;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3EventBus;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3Fragment;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3Parser;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3ResultsDataBase;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3RunResult;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3RunResultDao;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3ToLineProtocolWorker;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3UploadWorker;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.Iperf3Worker;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Error;
@@ -52,18 +48,16 @@ import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Interva
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.SUM_TYPE;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.Sum;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.UDP.UDP_DL_SUM;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric.METRIC_TYPE;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric.Metric;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric.RunningStats;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SPType;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SharedPreferencesGrouper;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.R;
 
 /**
  * The new single-source for Iperf3 tests, which can be used to programatically read and parse Iperf3
  * results and start Iperf3 tests.
  * <p>
  * It has two moving parts - one for listening for test results and one for starting tests -
- * the internal {@link #parsingRunnable} and a bunch of synchronization necessary for all of that to
+ * the {@link Iperf3EventBus} subscription of {@link #startFollowing} and a bunch of synchronization necessary for all of that to
  * work together.
  *
  * @see #startListeningForIperf3Updates(Iperf3MonitorCompletionListener)
@@ -84,23 +78,37 @@ public class Iperf3Monitor {
 
     private static final String TAG = "Iperf3Monitor";
 
-    private final static long PARSING_DELAY_IN_MS = 10L; //0.01sec, was 1000L
-
     private Handler handler;
 
     private HandlerThread handlerThread;
 
-    private static volatile Iperf3Monitor instance;
-    private Context appContext;
+    /**
+     * The id of the test whose events are followed, see {@link #startFollowing}
+     */
+    private volatile String followedRunId;
+
+    /**
+     * Gets the followed test's events, on {@link #handler}; null once it's done
+     */
+    private volatile PropertyChangeListener followedRunListener;
 
-    private volatile Metric defaultThroughput;
-    private volatile Metric defaultReverseThroughput;
-    private volatile Metric defaultJITTER;
-    private volatile Metric PACKET_LOSS;
+    /**
+     * Subscribed to the {@link Iperf3EventBus}, posts the events to {@link #followedRunListener}
+     */
+    private volatile PropertyChangeListener followedRunSubscription;
+
+    /**
+     * Set once the followed test's end event arrived
+     */
+    private volatile boolean followedRunEnded;
 
-    private final AtomicBoolean shouldStop = new AtomicBoolean(false);
+    private static volatile Iperf3Monitor instance;
+    private Context appContext;
 
-    private volatile Iperf3Parser iperf3Parser;
+    private volatile RunningStats defaultThroughput;
+    private volatile RunningStats defaultReverseThroughput;
+    private volatile RunningStats defaultJITTER;
+    private volatile RunningStats PACKET_LOSS;
 
     private final AtomicBoolean iperf3TestRunning = new AtomicBoolean(false);
 
@@ -120,27 +128,6 @@ public class Iperf3Monitor {
 
     private volatile @NonNull PingMetricsPOJO lastPingTestMetrics;
 
-    /**
-     * Runnable used for parsing Iperf3 tests by constantly calling {@link #iperf3Parser}'s
-     * {@link Iperf3Parser#parse()} method every {@link #PARSING_DELAY_IN_MS} until it reaches the end
-     * or ordered to stop by toggling {@link #shouldStop} flag
-     */
-    private final Runnable parsingRunnable = new Runnable() {
-        @Override
-        public void run() {
-            CloudCityLogger.v(TAG, "startParsingThread()::parsingCycle!\tshouldStop: " + shouldStop.get());
-
-            // And finally, parse a bit of the file.
-            iperf3Parser.parse();
-            if (shouldStop.get()) {
-                // well, do nothing but return
-                return;
-            } else {
-                handler.postDelayed(this, PARSING_DELAY_IN_MS);
-            }
-        }
-    };
-
     private Iperf3Monitor() {
         // private constructor to prevent instantiation
     }
@@ -203,6 +190,8 @@ public class Iperf3Monitor {
             throw new IllegalStateException("Iperf3Monitor was not initialized. Cannot call shutdown() before calling initialize()");
         }
 
+        instance.stopFollowing();
+
         if (instance.handler != null) {
             try {
                 // Clean up all callbacks from the handler
@@ -240,71 +229,44 @@ public class Iperf3Monitor {
     public void startListeningForIperf3Updates(Iperf3MonitorCompletionListener completionListener) {
         // Start listening for iPerf3 results...
         iperf3ResultsDatabase.iperf3RunResultDao().getLatestResult().observeForever(latestIperf3RunResult -> {
-            shouldStop.set(false);
             // Actually, since these come from the DB, the latest Iperf3 result will be the *last executed Iperf3 test*
             // So if no Iperf3 tests were ran ever, the first result will naturally be 'null' because there's nothing
             // in the DB.
-            CloudCityLogger.d(TAG, "Latest iPerf3 emission: " + latestIperf3RunResult + "\tshouldStop: " + shouldStop.get());
+            CloudCityLogger.d(TAG, "Latest iPerf3 emission: " + latestIperf3RunResult);
             // The first emmision is always a null so...
             if (latestIperf3RunResult != null) {
                 CloudCityLogger.v(TAG, "Latest iPerf3 result is: " + latestIperf3RunResult.result);
-                // 0 is the magic number for success
-                if (latestIperf3RunResult.result == 0) {
-                    CloudCityLogger.v(TAG, "Result was fine, commencing further...");
-                    if (latestIperf3RunResult.input != null) {
-                        CloudCityLogger.v(TAG, "Latest result's rawIperf3file is: " + latestIperf3RunResult.input.iperf3rawIperf3file);
-                    } else {
+                // -100 is the magic number for 'in progress', 0 the one for success
+                if (latestIperf3RunResult.result == -100 || latestIperf3RunResult.result == 0) {
+                    if (latestIperf3RunResult.input == null) {
                         CloudCityLogger.v(TAG, "Latest result's input was: NULL");
+                        return;
                     }
-
-                    // Copy the file, for just in case
-                    // This is useful for when we run the test and open it up in the default Iperf3 log viewer
-                    // since the Iperf3Parser might be destructively parsing the file - from what I noticed only
-                    // one of them reaches the END
-                    String originalFilePath = latestIperf3RunResult.input.iperf3rawIperf3file;
-                    String targetFilePath = originalFilePath + ".tmp";
-
-                    try {
-                        copyFile(originalFilePath, targetFilePath);
-                    } catch (IOException e) {
-                        CloudCityLogger.e(TAG, "Exception " + e + " happened during iperf3 raw file copy!", e);
-                        throw new RuntimeException(e);
+                    CloudCityLogger.v(TAG, "Latest result's rawIperf3file is: " + latestIperf3RunResult.input.iperf3rawIperf3file);
+                    String rawIperf3File = latestIperf3RunResult.input.iperf3rawIperf3file;
+
+                    if (latestIperf3RunResult.uid.equals(followedRunId)) {
+                        // Already following this test since it started
+                        if (latestIperf3RunResult.result == 0) {
+                            // after the events already posted, so an end event among them counts
+                            handler.post(() -> onFollowedRunFinished(rawIperf3File));
+                        }
+                        return;
                     }
 
-                    CloudCityLogger.v(TAG, "File copying should be done, instantiating new parser with rawIperf3File: " + targetFilePath);
-
-                    Iperf3Parser iperf3Parser = Iperf3Parser.instantiate(targetFilePath);
-                    defaultThroughput = new Metric(METRIC_TYPE.THROUGHPUT, appContext);
-                    defaultReverseThroughput = new Metric(METRIC_TYPE.THROUGHPUT, appContext);
-                    defaultJITTER = new Metric(METRIC_TYPE.JITTER, appContext);
-                    PACKET_LOSS = new Metric(METRIC_TYPE.PACKET_LOSS, appContext);
-                    // Obviously, these things need to be added or nothing will work... ffs...
-                    defaultThroughput.createMainLL("Throughput");
-                    defaultReverseThroughput.createMainLL("Throughput");
-                    defaultJITTER.createMainLL("Jitter ms");
-                    PACKET_LOSS.createMainLL("Packet Loss %");
-                    // With this retarded problem out of the way... we can move on.
-
-                    CloudCityLogger.v(TAG, "Adding property change listener");
-                    iperf3Parser.addPropertyChangeListener(new PropertyChangeListener() {
-                        private void parseSum(Sum sum, Metric throughput) {
-                            SUM_TYPE sumType = sum.getSumType();
-                            throughput.update(sum.getBits_per_second());
-                            switch (sumType) {
-                                case UDP_DL:
-                                    defaultJITTER.update(((UDP_DL_SUM) sum).getJitter_ms());
-                                    PACKET_LOSS.update(((UDP_DL_SUM) sum).getLost_percent());
-                                case TCP_DL:
-                                    if (throughput.getDirectionName().getText().equals("Throughput")) {
-                                        throughput.getDirectionName().setText("Downlink Mbit/s");
-                                    }
-                                    break;
-                                case UDP_UL:
-                                case TCP_UL:
-                                    if (throughput.getDirectionName().getText().equals("Throughput")) {
-                                        throughput.getDirectionName().setText("Uplink Mbit/s");
-                                    }
-                                    break;
+                    CloudCityLogger.v(TAG, "Following the events of test " + latestIperf3RunResult.uid);
+
+                    defaultThroughput = new RunningStats();
+                    defaultReverseThroughput = new RunningStats();
+                    defaultJITTER = new RunningStats();
+                    PACKET_LOSS = new RunningStats();
+
+                    PropertyChangeListener listener = new PropertyChangeListener() {
+                        private void parseSum(Sum sum, RunningStats throughput) {
+                            throughput.add(sum.getBits_per_second());
+                            if (sum.getSumType() == SUM_TYPE.UDP_DL) {
+                                defaultJITTER.add(((UDP_DL_SUM) sum).getJitter_ms());
+                                PACKET_LOSS.add(((UDP_DL_SUM) sum).getLost_percent());
                             }
                         }
 
@@ -319,7 +281,7 @@ public class Iperf3Monitor {
                                         parseSum(interval.getSumBidirReverse(), defaultReverseThroughput);
                                     }
 
-                                    CloudCityLogger.v(TAG, "INTERVAL\tdefaultThroughput size: " + defaultThroughput.getMeanList().size() + ", defaultReverseThroughput size: " + defaultReverseThroughput.getMeanList().size());
+                                    CloudCityLogger.v(TAG, "INTERVAL\tdefaultThroughput size: " + defaultThroughput.getCount() + ", defaultReverseThroughput size: " + defaultReverseThroughput.getCount());
                                 }
                                 break;
 
@@ -329,31 +291,31 @@ public class Iperf3Monitor {
                                 break;
 
                                 case "end": {
-                                    CloudCityLogger.v(TAG, "END\tdefaultThroughput size: " + defaultThroughput.getMeanList().size() + ", defaultReverseThroughput size: " + defaultReverseThroughput.getMeanList().size());
+                                    CloudCityLogger.v(TAG, "END\tdefaultThroughput size: " + defaultThroughput.getCount() + ", defaultReverseThroughput size: " + defaultReverseThroughput.getCount());
                                     CloudCityLogger.v(TAG, "END\tend value is: " + evt.getNewValue() + "\t\tequals END_MARKER ? " + evt.getNewValue().equals(Iperf3Parser.END_MARKER));
 
                                     //NOTE: while this is exactly the same as calculateAndLogMetrics(), we need these values here
                                     // so we can pass them to the Iperf3MonitorCompletionListener
                                     //
                                     // Throughput values need to be normalized by dividing by 1e6 so => realValue = value/1e+6
-                                    double DLmin = normalize(defaultReverseThroughput.calcMin());
-                                    double DLmedian = normalize(defaultReverseThroughput.calcMedian());
-                                    double DLmax = normalize(defaultReverseThroughput.calcMax());
-                                    double DLmean = normalize(defaultReverseThroughput.calcMean());
-                                    double DLlast = normalize(CloudCityUtil.getLastElementFromListOfDoubles(defaultReverseThroughput.getMeanList()));
-
-                                    double ULmin = normalize(defaultThroughput.calcMin());
-                                    double ULmedian = normalize(defaultThroughput.calcMedian());
-                                    double ULmax = normalize(defaultThroughput.calcMax());
-                                    double ULmean = normalize(defaultThroughput.calcMean());
-                                    double ULlast = normalize(CloudCityUtil.getLastElementFromListOfDoubles(defaultThroughput.getMeanList()));
+                                    double DLmin = normalize(defaultReverseThroughput.getMin());
+                                    double DLmedian = normalize(defaultReverseThroughput.getMedian());
+                                    double DLmax = normalize(defaultReverseThroughput.getMax());
+                                    double DLmean = normalize(defaultReverseThroughput.getMean());
+                                    double DLlast = normalize(defaultReverseThroughput.getLast());
+
+                                    double ULmin = normalize(defaultThroughput.getMin());
+                                    double ULmedian = normalize(defaultThroughput.getMedian());
+                                    double ULmax = normalize(defaultThroughput.getMax());
+                                    double ULmean = normalize(defaultThroughput.getMean());
+                                    double ULlast = normalize(defaultThroughput.getLast());
 
                                     CloudCityLogger.d(TAG, "download speeds: MIN=" + DLmin + ", MED=" + DLmedian + ", MAX=" + DLmax + ", MEAN=" + DLmean + ", LAST=" + DLlast);
                                     CloudCityLogger.d(TAG, "upload speeds: MIN=" + ULmin + ", MED=" + ULmedian + ", MAX=" + ULmax + ", MEAN=" + ULmean + ", LAST=" + ULlast);
 
-                                    // Stop the thread to avoid spinning it needlessly forever...
-                                    stopParsingThread();
-                                    shouldStop.compareAndSet(false, true);
+                                    // Stop following the test, nothing comes after the end
+                                    followedRunEnded = true;
+                                    stopFollowing();
 
                                     testEndTimestamp = System.currentTimeMillis();
                                     PingMetricsPOJO.MetricsPair pingMetricsPair = lastPingTestMetrics.toMetricsPair();
@@ -376,40 +338,21 @@ public class Iperf3Monitor {
                                     iperf3TestRunning.compareAndSet(true, false);
                                     lastPingTestMetrics = null;
 
-                                    CloudCityLogger.v(TAG, "END\tcleaned up everything! shouldStop: " + shouldStop.get() + ", iperf3TestRunning: " + iperf3TestRunning.get());
+                                    CloudCityLogger.v(TAG, "END\tcleaned up everything! iperf3TestRunning: " + iperf3TestRunning.get());
                                 }
                                 break;
 
                                 case "error": {
                                     Error error = (Error) evt.getNewValue();
-                                    TextView errorView = new TextView(appContext);
-                                    errorView.setText(error.getError());
-                                    errorView.setTextColor(appContext.getColor(R.color.crimson));
-                                    errorView.setPadding(10, 10, 10, 10);
-                                    errorView.setTextSize(20);
-//                                metricLL.addView(errorView);
+                                    CloudCityLogger.e(TAG, "ERROR\t" + error.getError());
                                 }
                                 break;
                             }
                         }
-                    });
-                    CloudCityLogger.v(TAG, "Adding completion listener");
-                    iperf3Parser.setCompletionListener(new Iperf3Parser.Iperf3ParserCompletionListener() {
-                        @Override
-                        public void onParseCompleted() {
-                            CloudCityLogger.v(TAG, "---> onParseCompleted");
-
-                            calculateAndLogMetrics();
-                            stopParsingThread();
-
-                            // And finally delete the temp copy of the file
-                            deleteFile(targetFilePath);
-                        }
-                    });
-
+                    };
 
-                    CloudCityLogger.d(TAG, "Starting parsing...");
-                    startParsingThread(iperf3Parser);
+                    CloudCityLogger.d(TAG, "Starting to follow...");
+                    startFollowing(latestIperf3RunResult.uid, listener, rawIperf3File, latestIperf3RunResult.result == 0);
                 } else {
                     // This could be either a 1, or a -100; first being a failure, the second one being a 'in progress' value.
                     CloudCityLogger.d(TAG, "latestIperf3RunResult.result was: " + latestIperf3RunResult.result);
@@ -419,35 +362,94 @@ public class Iperf3Monitor {
                     if (latestIperf3RunResult.result != -100) {
                         CloudCityLogger.d(TAG, "latestIperf3RunResult.result was actually terminal, finishing iperf3 test run");
                         iperf3TestRunning.compareAndSet(true, false);
+                        if (latestIperf3RunResult.uid.equals(followedRunId)) {
+                            stopFollowing();
+                        }
                     }
                 }
             }
         });
     }
 
-    private void startParsingThread(Iperf3Parser newIperf3Parser) {
-        CloudCityLogger.d(TAG, "--> startParsingThread()");
-        iperf3Parser = newIperf3Parser;
-        handler.post(parsingRunnable);
-        CloudCityLogger.d(TAG, "<-- startParsingThread()");
+    /**
+     * Follow a test's events, which {@link Iperf3Worker} publishes on the {@link Iperf3EventBus}
+     * while iperf3 runs, instead of reading its logfile. The events are handled on {@link #handler},
+     * never on the publishing thread or while the bus replays them.
+     *
+     * @param runId         the test's id
+     * @param listener      gets the events
+     * @param rawIperf3File the test's logfile
+     * @param testFinished  whether the test is already over
+     */
+    private void startFollowing(String runId, PropertyChangeListener listener, String rawIperf3File, boolean testFinished) {
+        CloudCityLogger.d(TAG, "--> startFollowing()");
+        stopFollowing();
+        followedRunId = runId;
+        followedRunListener = listener;
+        followedRunEnded = false;
+        PropertyChangeListener subscription = evt -> handler.post(() -> {
+            // events of a test which isn't followed anymore may still be queued
+            if (followedRunListener == listener) {
+                listener.propertyChange(evt);
+            }
+        });
+        followedRunSubscription = subscription;
+        Iperf3EventBus.subscribe(runId, subscription);
+        if (testFinished) {
+            handler.post(() -> onFollowedRunFinished(rawIperf3File));
+        }
+        CloudCityLogger.d(TAG, "<-- startFollowing()");
     }
 
-    private void stopParsingThread() {
-        handler.removeCallbacks(parsingRunnable);
+    private void stopFollowing() {
+        String runId = followedRunId;
+        PropertyChangeListener subscription = followedRunSubscription;
+        // the id stays, so further emissions for the same test are recognized
+        followedRunListener = null;
+        followedRunSubscription = null;
+        if (runId != null && subscription != null) {
+            Iperf3EventBus.unsubscribe(runId, subscription);
+        }
+    }
+
+    /**
+     * Called on {@link #handler} once the followed test succeeded, when all of its events were published
+     */
+    private void onFollowedRunFinished(String rawIperf3File) {
+        PropertyChangeListener listener = followedRunListener;
+        if (followedRunEnded || listener == null) {
+            return;
+        }
+        if (Iperf3EventBus.isFinished(followedRunId)) {
+            // the test finished without an end event, take what was there
+            CloudCityLogger.v(TAG, "---> followed test finished without an end event");
+            calculateAndLogMetrics();
+            stopFollowing();
+            return;
+        }
+        // nothing was published for it, so read the logfile instead
+        CloudCityLogger.v(TAG, "Nothing published for the followed test, parsing " + rawIperf3File);
+        stopFollowing();
+        Iperf3Parser iperf3Parser = Iperf3Parser.instantiate(rawIperf3File);
+        iperf3Parser.addPropertyChangeListener(listener);
+        iperf3Parser.parse();
+        if (!followedRunEnded) {
+            calculateAndLogMetrics();
+        }
     }
 
     private void calculateAndLogMetrics() {
-        double DLmin = normalize(defaultReverseThroughput.calcMin());
-        double DLmedian = normalize(defaultReverseThroughput.calcMedian());
-        double DLmax = normalize(defaultReverseThroughput.calcMax());
-        double DLmean = normalize(defaultReverseThroughput.calcMean());
-        double DLlast = normalize(CloudCityUtil.getLastElementFromListOfDoubles(defaultReverseThroughput.getMeanList()));
-
-        double ULmin = normalize(defaultThroughput.calcMin());
-        double ULmedian = normalize(defaultThroughput.calcMedian());
-        double ULmax = normalize(defaultThroughput.calcMax());
-        double ULmean = normalize(defaultThroughput.calcMean());
-        double ULlast = normalize(CloudCityUtil.getLastElementFromListOfDoubles(defaultThroughput.getMeanList()));
+        double DLmin = normalize(defaultReverseThroughput.getMin());
+        double DLmedian = normalize(defaultReverseThroughput.getMedian());
+        double DLmax = normalize(defaultReverseThroughput.getMax());
+        double DLmean = normalize(defaultReverseThroughput.getMean());
+        double DLlast = normalize(defaultReverseThroughput.getLast());
+
+        double ULmin = normalize(defaultThroughput.getMin());
+        double ULmedian = normalize(defaultThroughput.getMedian());
+        double ULmax = normalize(defaultThroughput.getMax());
+        double ULmean = normalize(defaultThroughput.getMean());
+        double ULlast = normalize(defaultThroughput.getLast());
 
         CloudCityLogger.d(TAG, "download speeds: MIN=" + DLmin + ", MED=" + DLmedian + ", MAX=" + DLmax + ", MEAN=" + DLmean + ", LAST=" + DLlast);
         CloudCityLogger.d(TAG, "upload speeds: MIN=" + ULmin + ", MED=" + ULmedian + ", MAX=" + ULmax + ", MEAN=" + ULmean + ", LAST=" + ULlast);
@@ -465,36 +467,6 @@ public class Iperf3Monitor {
         void onIperf3TestCompleted(Iperf3MetricsPOJO metrics);
     }
 
-    /**
-     * Copies a file designated by <i>sourceFileName</i> file path to the <i>destFileName</i> path
-     * <br>
-     * Throws IOException if something goes wrong.
-     *
-     * @param sourceFileName path to the source file
-     * @param destFileName   path to the destination file, where the file should be copied to (including the new name)
-     * @throws IOException
-     */
-    public static void copyFile(String sourceFileName, String destFileName) throws IOException {
-        FileInputStream fis = null;
-        FileOutputStream fos = null;
-        try {
-            fis = new FileInputStream(sourceFileName);
-            fos = new FileOutputStream(destFileName);
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = fis.read(buffer)) > 0) {
-                fos.write(buffer, 0, length);
-            }
-        } finally {
-            if (fis != null) {
-                fis.close();
-            }
-            if (fos != null) {
-                fos.close();
-            }
-        }
-    }
-
     /**
      * Deletes file designated by <i>filePath</i>
      *
@@ -761,11 +733,6 @@ public class Iperf3Monitor {
                         .addTag("iperf3Run")
                         .addTag(iperf3WorkerID)
                         .build();
-        OneTimeWorkRequest iperf3LP =
-                new OneTimeWorkRequest
-                        .Builder(Iperf3ToLineProtocolWorker.class)
-                        .setInputData(iperf3Data.build())
-                        .build();
         OneTimeWorkRequest iperf3UP =
                 new OneTimeWorkRequest
                         .Builder(Iperf3UploadWorker.class)
@@ -818,9 +785,7 @@ public class Iperf3Monitor {
 
                     // Enqueue tasks onto the WorkManager
                     if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_influx", false) && iperf3Json) {
-                        iperf3WM.beginWith(iperf3WR).then(iperf3LP).then(iperf3UP).enqueue();
-                    } else if (iperf3Json) {
-                        iperf3WM.beginWith(iperf3WR).then(iperf3LP).enqueue();
+                        iperf3WM.beginWith(iperf3WR).then(iperf3UP).enqueue();
                     } else {
                         iperf3WM.beginWith(iperf3WR).enqueue();
                     }
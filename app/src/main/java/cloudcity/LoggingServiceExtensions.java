@@ -1,106 +1,55 @@
 package cloudcity;
 
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.location.Location;
-import android.os.Handler;
-import android.os.HandlerThread;
 import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import cloudcity.networking.CloudCityHelpers;
+import cloudcity.networking.GzipRequestInterceptor;
+import cloudcity.networking.UploadCircuitBreaker;
 import cloudcity.networking.models.MeasurementsModel;
 import cloudcity.networking.models.MobileSignalNetworkDataModel;
 import cloudcity.networking.models.NetworkDataModel;
-import cloudcity.networking.models.NetworkDataModelRequest;
+import cloudcity.networking.outbox.CloudCityOutbox;
 import cloudcity.util.CellUtil;
 import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SPType;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SharedPreferencesGrouper;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.CellInformations.CellInformation;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.DataProvider;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.GlobalVars;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SPType;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SharedPreferencesGrouper;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LoggingSink;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.LoggingService;
 
 public class LoggingServiceExtensions {
     private static final String TAG = "LoggingServiceExtensions";
 
-    private static Handler CloudCityHandler;
-    private static SharedPreferences sp;
-
     private static GlobalVars gv;
 
-    private static int interval;
-
     private static volatile DataProvider dp;
 
-    private static HandlerThread handlerThread;
-
     private static AtomicBoolean isUpdating = new AtomicBoolean(false);
 
-    // Handle remote Cloud City update
-    private final static Runnable CloudCityUpdate = new Runnable() {
-        @Override
-        public void run() {
-            try {
-                CloudCityLogger.d(TAG, "run: CC Update");
-                interval = Integer.parseInt(sp.getString("logging_interval", "1000"));
-                String address = CloudCityParamsRepository.getInstance().getServerUrl();
-                String token = CloudCityParamsRepository.getInstance().getServerToken();
-
-                NetworkDataModel data = getCloudCityData();
-                CloudCityLogger.d(TAG, "getCloudCityData() returned "+data);
-                if (data == null) {
-                    CloudCityLogger.e(TAG, "run: Error in getting data from Cloud city, skipping sending");
-                } else {
-                    NetworkDataModelRequest requestData = new NetworkDataModelRequest();
-                    requestData.add(data);
-
-                    CloudCityLogger.d(TAG, "sending data at addr=" + address + ", token=" + token + ", interval=" + interval);
-
-                    boolean status = CloudCityHelpers.sendData(address, token, requestData);
-
-                    if (status) {
-                        /* Data sent successfully indicate in status icon. */
-                        gv.getLog_status().setColorFilter(Color.argb(255, 0, 255, 0));
-                    } else {
-                        gv.getLog_status().setColorFilter(Color.argb(255, 255, 0, 0));
-                    }
-                }
-            } catch (Exception e) {
-                CloudCityLogger.e(TAG, "Exception happened! exception "+e, e);
-            }
-
-            CloudCityHandler.postDelayed(this, interval);
-        }
-    };
-
-    public static void setupCloudCity(GlobalVars globalVars, int updateInterval, DataProvider dataProvider, SharedPreferencesGrouper spg) {
-        setupCloudCity2(globalVars, updateInterval, dataProvider, spg.getSharedPreference(SPType.logging_sp));
-    }
-
     /**
-     * initialize a new remote Cloud City connection
+     * initialize a new remote Cloud City connection; the data itself is sampled by the
+     * {@link LoggingService} sampler and sent by the returned sink on its own thread
+     *
+     * @param context      the context to open the {@link CloudCityOutbox} with
+     * @return the sink sending to Cloud City, to be registered with the {@link LoggingService}'s dispatcher
      */
-    public static void setupCloudCity2(GlobalVars globalVars, int updateInterval, @NonNull DataProvider dataProvider, SharedPreferences sharedPrefs) {
+    public static LoggingSink setupCloudCity(@NonNull Context context, GlobalVars globalVars, @NonNull DataProvider dataProvider) {
         CloudCityLogger.d(TAG, "setupCloudCity");
 
         gv = globalVars;
-        interval = updateInterval;
         dp = dataProvider;
-        sp = sharedPrefs;
-
-        /* Create CC API instance. */
-        handlerThread = new HandlerThread("CloudCityHandlerThread");
-        handlerThread.start();
-        CloudCityHandler = new Handler(Objects.requireNonNull(handlerThread.getLooper()));
-        if (isUpdating.compareAndSet(false, true)) {
-            CloudCityHandler.post(CloudCityUpdate);
-        }
+
+        isUpdating.compareAndSet(false, true);
         ImageView log_status = gv.getLog_status();
         if (log_status != null) {
             gv.getLog_status().setColorFilter(Color.argb(255, 255, 0, 0));
@@ -114,39 +63,61 @@ public class LoggingServiceExtensions {
         } else {
             CloudCityLogger.e(TAG, "DataProvider was null! Didn't refreshAll() internal data caches.");
         }
+
+        // samples are collected and sent together, batchEvents at a time or every batchSeconds
+        SharedPreferences prefs = SharedPreferencesGrouper.getInstance(context).getSharedPreference(SPType.logging_sp);
+        int batchEvents = Math.min(parsePositive(prefs.getString(CloudCityConstants.CLOUD_CITY_BATCH_EVENTS, "30"), 30),
+                CloudCityOutbox.MAX_BATCH_SIZE);
+        int batchSeconds = parsePositive(prefs.getString(CloudCityConstants.CLOUD_CITY_BATCH_SECONDS, "30"), 30);
+        CloudCityLogger.d(TAG, "sending batches of " + batchEvents + " samples, at least every " + batchSeconds + "s");
+        GzipRequestInterceptor.setEnabled(prefs.getBoolean(CloudCityConstants.CLOUD_CITY_GZIP, false));
+        // the server or token may have changed since the breaker last opened
+        UploadCircuitBreaker.getInstance().reset();
+
+        return new CloudCitySink(gv, CloudCityOutbox.getInstance(context), batchEvents, batchSeconds * 1000L);
+    }
+
+    private static int parsePositive(String value, int fallback) {
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException | NullPointerException e) {
+            CloudCityLogger.w(TAG, "invalid batch setting " + value + ", using " + fallback);
+            return fallback;
+        }
     }
 
     /**
-     * stop remote influx logging in clear up all internal instances of involved objects
+     * stop remote Cloud City logging; the sink returned by {@link #setupCloudCity(Context, GlobalVars, DataProvider)}
+     * has to be removed from the dispatcher by the caller
      */
     public static void stopCloudCity() {
         CloudCityLogger.d(TAG, "stopCloudCity");
-        // cleanup the handler is existing
-        if (CloudCityHandler != null) {
-            try {
-                CloudCityHandler.removeCallbacks(CloudCityUpdate);
-                boolean unset = isUpdating.compareAndSet(true, false);
-                if(!unset) {
-                    CloudCityLogger.e(TAG, "There was a problem with updating 'isUpdating', expected 'true' but was 'false' instead");
-                }
-            } catch (NullPointerException e) {
-                CloudCityLogger.d(TAG, "trying to stop cloud city service while it was not running");
-            }
+        boolean unset = isUpdating.compareAndSet(true, false);
+        if(!unset) {
+            CloudCityLogger.d(TAG, "trying to stop cloud city service while it was not running");
         }
 
-        if (handlerThread != null) {
-            handlerThread.quitSafely();
-            try {
-                handlerThread.join();
-            } catch (InterruptedException e) {
-                CloudCityLogger.e(TAG, "Exception happened!! "+e, e);
-            }
+        if (gv != null && gv.getLog_status() != null) {
+            gv.getLog_status().setColorFilter(Color.argb(255, 192, 192, 192));
         }
+    }
 
-        gv.getLog_status().setColorFilter(Color.argb(255, 192, 192, 192));
+    /**
+     * Whether Cloud City logging is running
+     *
+     * @return true if {@link #setupCloudCity(Context, GlobalVars, DataProvider)} was called and
+     * {@link #stopCloudCity()} wasn't called since
+     */
+    public static boolean isRunning() {
+        return isUpdating.get();
     }
 
-    private static NetworkDataModel getCloudCityData() {
+    /**
+     * Build the Cloud City model from the current {@link DataProvider} state
+     *
+     * @return the model to send, or null if the {@link DataProvider} isn't available
+     */
+    public static NetworkDataModel getCloudCityData() {
         if (dp == null) {
             CloudCityLogger.e(TAG, "DataProvider was null! Bailing out, returning null...");
             return null;
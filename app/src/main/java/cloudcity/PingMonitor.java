@@ -20,9 +20,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import cloudcity.dataholders.PingMetricsPOJO;
 import cloudcity.util.CloudCityLogger;
-import cloudcity.util.CloudCityUtil;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric.METRIC_TYPE;
-import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric.Metric;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric.RunningStats;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Ping.PingInformations.PacketLossLine;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Ping.PingInformations.PingInformation;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Ping.PingInformations.RTTLine;
@@ -47,9 +45,9 @@ public class PingMonitor {
 
     private Context appContext;
 
-    private Metric rttMetric;
+    private RunningStats rttMetric;
 
-    private Metric packetLossMetric;
+    private RunningStats packetLossMetric;
 
     private volatile PingParser pingParser;
 
@@ -174,11 +172,8 @@ public class PingMonitor {
         CloudCityLogger.d(TAG, "--> startPingTest()\tlistener: " + completionListener);
 
         // Instantiate the metrics
-        rttMetric = new Metric(METRIC_TYPE.PING_RTT, appContext);
-        packetLossMetric = new Metric(METRIC_TYPE.PING_PACKET_LOSS, appContext);
-        // I'm not sure we actually need these, but... why not.
-        rttMetric.createMainLL("RTT [ms]");
-        packetLossMetric.createMainLL("Packet Loss [%]");
+        rttMetric = new RunningStats();
+        packetLossMetric = new RunningStats();
 
         pingParser = PingParser.getInstance(null);
         CloudCityLogger.v(TAG, "Adding property change listener");
@@ -187,10 +182,10 @@ public class PingMonitor {
 //            CloudCityLogger.v(TAG, "propertyChange: "+pi+"\tline type: "+pi.getLineType());
             switch (pi.getLineType()) {
                 case RTT:
-                    rttMetric.update(((RTTLine) pi).getRtt());
+                    rttMetric.add(((RTTLine) pi).getRtt());
                     break;
                 case PACKET_LOSS:
-                    packetLossMetric.update(((PacketLossLine) pi).getPacketLoss());
+                    packetLossMetric.add(((PacketLossLine) pi).getPacketLoss());
                     break;
             }
         });
@@ -272,17 +267,17 @@ public class PingMonitor {
     }
 
     private PingMetricsPOJO calculateAndLogMetrics(WorkInfo.State state) {
-        double RTTmin = rttMetric.calcMin();
-        double RTTmedian = rttMetric.calcMedian();
-        double RTTmax = rttMetric.calcMax();
-        double RTTmean = rttMetric.calcMean();
-        double RTTlast = CloudCityUtil.getLastElementFromListOfDoubles(rttMetric.getMeanList());
-
-        double PLmin = packetLossMetric.calcMin();
-        double PLmedian = packetLossMetric.calcMedian();
-        double PLmax = packetLossMetric.calcMax();
-        double PLmean = packetLossMetric.calcMean();
-        double PLlast = CloudCityUtil.getLastElementFromListOfDoubles(packetLossMetric.getMeanList());
+        double RTTmin = rttMetric.getMin();
+        double RTTmedian = rttMetric.getMedian();
+        double RTTmax = rttMetric.getMax();
+        double RTTmean = rttMetric.getMean();
+        double RTTlast = rttMetric.getLast();
+
+        double PLmin = packetLossMetric.getMin();
+        double PLmedian = packetLossMetric.getMedian();
+        double PLmax = packetLossMetric.getMax();
+        double PLmean = packetLossMetric.getMean();
+        double PLlast = packetLossMetric.getLast();
         CloudCityLogger.d(TAG, "RTT speeds: MIN=" + RTTmin + ", MED=" + RTTmedian + ", MAX=" + RTTmax + ", MEAN=" + RTTmean + ", LAST=" + RTTlast);
         CloudCityLogger.d(TAG, "PL speeds: MIN=" + PLmin + ", MED=" + PLmedian + ", MAX=" + PLmax + ", MEAN=" + PLmean + ", LAST=" + PLlast);
 
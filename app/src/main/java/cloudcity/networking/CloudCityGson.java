@@ -0,0 +1,24 @@
+package cloudcity.networking;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import cloudcity.networking.models.NetworkModelTypeAdapterFactory;
+
+/**
+ * The one {@link Gson} instance for everything Cloud City sends, with the streaming adapters of
+ * {@link NetworkModelTypeAdapterFactory}. Gson is thread safe and caches its adapters, so it's
+ * built once and shared.
+ */
+public final class CloudCityGson {
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapterFactory(new NetworkModelTypeAdapterFactory())
+            .create();
+
+    private CloudCityGson() {
+    }
+
+    public static Gson get() {
+        return GSON;
+    }
+}
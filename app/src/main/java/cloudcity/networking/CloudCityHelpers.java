@@ -1,49 +1,217 @@
 package cloudcity.networking;
 
+import androidx.annotation.NonNull;
+
 import java.io.IOException;
+import java.util.List;
 import java.util.Locale;
 
 import cloudcity.networking.models.NetworkDataModel;
 import cloudcity.networking.models.NetworkDataModelRequest;
 import cloudcity.util.CloudCityLogger;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Utf8;
+import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
-import retrofit2.Retrofit;
 
 public class CloudCityHelpers {
     public static final String TAG = "CloudCityHelpers";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int MAX_ATTEMPTS = 3;
+    // longer backoffs aren't waited out on the caller's thread
+    private static final long MAX_INLINE_WAIT_MS = 10_000;
 
+    /**
+     * Send the request, trying again up to {@link #MAX_ATTEMPTS} times while the server fails with
+     * something worth retrying and the {@link UploadCircuitBreaker} lets it wait for at most
+     * {@link #MAX_INLINE_WAIT_MS} in between. Blocks the caller while waiting.
+     *
+     * @return true if the server accepted the request
+     */
     public static boolean sendData(String address, String token, NetworkDataModelRequest data) {
         CloudCityLogger.d(TAG, "--> sendData()\taddress=" + address + ", token=" + token + ", data=" + data);
-        Retrofit retrofit = NetworkClient.getRetrofitClient(address);
-        if (retrofit == null) {
+        ServerAPI api = NetworkClient.getServerAPI(address);
+        if (api == null) {
             CloudCityLogger.e(TAG, "sendData: Retrofit not set, exiting.");
             return false;
         }
-        ServerAPI api = retrofit.create(ServerAPI.class);
-        Response<Void> response = null;
+        // Check if data has valid Lat,Lng pair, do not send if they are (0,0)
+        if (!validateData(data)) {
+            CloudCityLogger.e(TAG, "sendData: data's location information was (0,0) - skipping sending!");
+            return false;
+        }
 
-        try {
-            // Check if data has valid Lat,Lng pair, do not send if they are (0,0)
-            boolean continueSending = validateData(data);
-            if (continueSending) {
-                CloudCityLogger.d(TAG, String.format(Locale.US, "sendData: Executing send data request: address %s", address));
-                response = api.sendData("Bearer " + token, data).execute();
-                CloudCityLogger.d(TAG, String.format(Locale.US, "Received sendData response. %s", response));
+        UploadCircuitBreaker breaker = UploadCircuitBreaker.getInstance();
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long wait = breaker.getRemainingMillis();
+            if (wait > MAX_INLINE_WAIT_MS) {
+                CloudCityLogger.w(TAG, "sendData: server is backing off for " + wait + " ms, giving up. " + breaker);
+                return false;
+            }
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (!breaker.tryAcquire()) {
+                CloudCityLogger.w(TAG, "sendData: another upload is probing the server, giving up. " + breaker);
+                return false;
+            }
 
+            try {
+                CloudCityLogger.d(TAG, String.format(Locale.US, "sendData: Executing send data request: address %s, attempt %d", address, attempt));
+                Response<Void> response = api.sendData("Bearer " + token, data).execute();
+                CloudCityLogger.d(TAG, String.format(Locale.US, "Received sendData response. %s", response));
+                breaker.recordResponse(response.code(), response.headers());
                 if (response.isSuccessful()) {
                     return true;
-                } else {
-                    CloudCityLogger.d(TAG, "sendData: Send data request failed.");
                 }
-                return false;
-            } else {
-                CloudCityLogger.e(TAG, "sendData: data's location information was (0,0) - skipping sending!");
+                CloudCityLogger.d(TAG, "sendData: Send data request failed.");
+                if (!UploadCircuitBreaker.isRetryable(response.code())) {
+                    return false;
+                }
+            } catch (IOException e) {
+                CloudCityLogger.e(TAG, "sendData: Failure to receive response.", e);
+                breaker.recordFailure();
+            } catch (RuntimeException e) {
+                // the outcome has to be reported either way, or a probe would hold the breaker half open
+                CloudCityLogger.e(TAG, "sendData: Failure while sending the request.", e);
+                breaker.recordFailure();
                 return false;
             }
-        } catch (IOException e) {
-            CloudCityLogger.e(TAG, "sendData: Failure to receive response.", e);
+        }
+        return false;
+    }
+
+    /**
+     * Outcome of an asynchronous request
+     */
+    public interface SendCallback {
+        /**
+         * Called on one of OkHttp's threads once the request is done
+         *
+         * @param success true if the server accepted the request
+         */
+        void onDone(boolean success);
+    }
+
+    /**
+     * Status code given to a {@link ResponseCallback} when the request got no response at all
+     */
+    public static final int NO_RESPONSE = -1;
+
+    /**
+     * Outcome of an asynchronous request, with the status code to tell a rejected request from a
+     * failed one
+     */
+    public interface ResponseCallback {
+        /**
+         * Called on one of OkHttp's threads once the request is done
+         *
+         * @param code the HTTP status code, or {@link #NO_RESPONSE}
+         */
+        void onDone(int code);
+    }
+
+    /**
+     * Send sensor events which are already serialized to JSON in one request, without waiting for it
+     *
+     * @param address  the Cloud City server
+     * @param token    the Cloud City token
+     * @param events   the JSON of every event, as it goes into {@code sensor_events}
+     * @param callback called once the request is done; not called if the request wasn't started
+     * @return false if the request couldn't be started, also while the {@link UploadCircuitBreaker}
+     * holds uploads back
+     */
+    public static boolean sendEvents(String address, String token, List<String> events, ResponseCallback callback) {
+        CloudCityLogger.d(TAG, "--> sendEvents()\taddress=" + address + ", events=" + events.size());
+        ServerAPI api = NetworkClient.getServerAPI(address);
+        if (api == null) {
+            CloudCityLogger.e(TAG, "sendEvents: Retrofit not set, exiting.");
+            return false;
+        }
+        UploadCircuitBreaker breaker = UploadCircuitBreaker.getInstance();
+        if (!breaker.tryAcquire()) {
+            CloudCityLogger.d(TAG, "sendEvents: holding back. " + breaker);
+            return false;
+        }
+
+        Call<Void> call;
+        try {
+            call = api.sendRawData("Bearer " + token, new SensorEventsBody(events));
+        } catch (RuntimeException e) {
+            CloudCityLogger.e(TAG, "sendEvents: Failure while creating the request.", e);
+            breaker.recordFailure();
             return false;
         }
+        call.enqueue(new Callback<Void>() {
+            @Override
+            public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
+                CloudCityLogger.d(TAG, String.format(Locale.US, "Received sendEvents response. %s", response));
+                breaker.recordResponse(response.code(), response.headers());
+                if (!response.isSuccessful()) {
+                    CloudCityLogger.d(TAG, "sendEvents: Send data request failed.");
+                }
+                callback.onDone(response.code());
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
+                CloudCityLogger.e(TAG, "sendEvents: Failure to receive response.", t);
+                breaker.recordFailure();
+                callback.onDone(NO_RESPONSE);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Writes already serialized events into the request sink as {@code {"sensor_events":[...]}},
+     * without joining them into one string first
+     */
+    private static final class SensorEventsBody extends RequestBody {
+        private static final String PREFIX = "{\"sensor_events\":[";
+        private static final String SUFFIX = "]}";
+
+        private final List<String> events;
+        private final long contentLength;
+
+        SensorEventsBody(List<String> events) {
+            this.events = events;
+            long length = PREFIX.length() + SUFFIX.length() + Math.max(0, events.size() - 1);
+            for (String event : events) {
+                length += Utf8.size(event);
+            }
+            this.contentLength = length;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            sink.writeUtf8(PREFIX);
+            for (int i = 0; i < events.size(); i++) {
+                if (i > 0) {
+                    sink.writeByte(',');
+                }
+                sink.writeUtf8(events.get(i));
+            }
+            sink.writeUtf8(SUFFIX);
+        }
     }
 
     private static boolean validateData(NetworkDataModelRequest data) {
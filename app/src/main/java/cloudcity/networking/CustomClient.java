@@ -8,12 +8,32 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.BuildConfig;
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 
 public class CustomClient {
+    // we only ever talk to one server, a few idle connections are plenty; keeping them for a while
+    // lets batches sent every few seconds reuse the TLS session instead of doing a new handshake
+    private static final int MAX_IDLE_CONNECTIONS = 2;
+    private static final long KEEP_ALIVE_MINUTES = 5;
 
+    /**
+     * Lazily built on first use, and then shared by every Retrofit client so they share its connection pool
+     */
+    private static final class Holder {
+        static final OkHttpClient CLIENT = buildUnsafeOkHttpClient();
+    }
+
+    /**
+     * @return the shared client, built on the first call
+     */
     public static OkHttpClient getUnsafeOkHttpClient() {
+        return Holder.CLIENT;
+    }
+
+    private static OkHttpClient buildUnsafeOkHttpClient() {
         try {
             // Create a trust manager that does not validate certificate chains
             X509TrustManager trustManager = new CustomTrustManager();
@@ -22,16 +42,21 @@ public class CustomClient {
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(null, new TrustManager[]{trustManager}, new SecureRandom());
 
+            // Logging bodies buffers and copies every request and response, only worth it while debugging
             HttpLoggingInterceptor logging = new HttpLoggingInterceptor(new CloudCityLogger.CloudCityLoggerOKHttpLogger());
-            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+            logging.setLevel(BuildConfig.DEBUG ? HttpLoggingInterceptor.Level.BODY : HttpLoggingInterceptor.Level.BASIC);
 
             // Create an OkHttpClient with the custom SSL context
             return new OkHttpClient.Builder()
                     .connectTimeout(10, TimeUnit.SECONDS)
                     .readTimeout(10, TimeUnit.SECONDS)
                     .writeTimeout(10, TimeUnit.SECONDS)
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .pingInterval(30, TimeUnit.SECONDS)
                     .sslSocketFactory(sslContext.getSocketFactory(), trustManager)
                     .hostnameVerifier((hostname, session) -> true)
+                    // before the logging, so what's logged is what's sent
+                    .addInterceptor(new GzipRequestInterceptor())
                     .addInterceptor(logging)
                     .build();
         } catch (Exception e) {
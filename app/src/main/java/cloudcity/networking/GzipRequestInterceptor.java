@@ -0,0 +1,90 @@
+package cloudcity.networking;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cloudcity.util.CloudCityLogger;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Compresses request bodies with gzip and sends them with {@code Content-Encoding: gzip}.
+ * <p>
+ * Batches of sensor events repeat the same field names in every event, so they shrink to a small
+ * fraction of their size. Not every server decompresses request bodies though, so it's off unless
+ * enabled in the settings.
+ * <p>
+ * A server which doesn't accept compressed bodies answers with 415, or with 400 or 422 if it tried to
+ * parse the compressed bytes; the request is then sent again uncompressed. If that one is accepted
+ * (or the answer was 415), that host only gets uncompressed bodies from then on.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+    private static final String TAG = "GzipRequestInterceptor";
+    // below this, the gzip header and trailer eat most of what's saved
+    private static final long MIN_BYTES = 512;
+    private static final int BAD_REQUEST = 400;
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    private static volatile boolean enabled = false;
+    private static final Set<String> uncompressedHosts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param enabled whether request bodies should be compressed
+     */
+    public static void setEnabled(boolean enabled) {
+        GzipRequestInterceptor.enabled = enabled;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        String host = request.url().host();
+        if (!enabled
+                || body == null
+                || request.header("Content-Encoding") != null
+                || (body.contentLength() >= 0 && body.contentLength() < MIN_BYTES)
+                || uncompressedHosts.contains(host)) {
+            return chain.proceed(request);
+        }
+
+        Request compressed = request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), gzip(body))
+                .build();
+        Response response = chain.proceed(compressed);
+        int code = response.code();
+        if (code != UNSUPPORTED_MEDIA_TYPE && code != BAD_REQUEST && code != UNPROCESSABLE_ENTITY) {
+            return response;
+        }
+
+        response.close();
+        Response plain = chain.proceed(request);
+        // a body the server refuses uncompressed as well may be bad itself, that says nothing about gzip
+        if (code == UNSUPPORTED_MEDIA_TYPE || plain.isSuccessful()) {
+            CloudCityLogger.w(TAG, host + " doesn't accept gzip request bodies (" + code + "), sending them uncompressed from now on");
+            uncompressedHosts.add(host);
+        }
+        return plain;
+    }
+
+    private static RequestBody gzip(RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(buffer))) {
+            body.writeTo(sink);
+        }
+        // with the compressed size known up front, it's sent with a Content-Length instead of chunked
+        return RequestBody.create(buffer.readByteString(), body.contentType());
+    }
+}
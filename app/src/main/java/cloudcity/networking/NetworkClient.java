@@ -1,7 +1,8 @@
 package cloudcity.networking;
 
+import androidx.annotation.Nullable;
+
 import java.util.Locale;
-import java.util.concurrent.locks.ReentrantLock;
 
 import cloudcity.util.CloudCityLogger;
 import retrofit2.Retrofit;
@@ -10,56 +11,74 @@ import retrofit2.converter.gson.GsonConverterFactory;
 public class NetworkClient {
     private static final String TAG = "NetworkClient";
 
-    private static volatile Retrofit retrofit;
-    private static volatile String currentClientBaseUrl;
-    private static ReentrantLock lock = new ReentrantLock();
-    private static final Object lockObject = new Object();
-
     /**
-     * Get retrofit client to be used for the communication. Creates and memoizes the client which will
-     * be reused as long as the URL stays the same - when the URL changes and differs from what the
-     * memoized ("singleton") client was initialized with - a new client gets initialized with the new base URL.
-     *
-     * @return Instance of retrofit client to be used.
+     * Retrofit client and {@link ServerAPI} proxy for one base URL; never modified, only replaced
      */
-    public static synchronized Retrofit getRetrofitClient(String url) {
-        String baseUrl = String.format(Locale.US, "https://%s/", url);
-        // If we don't have a retrofit client, or the URL we're targetting is different
-        // than what the previous client was initialized with - build a new client;
-        // otherwise return the last initialized one
-        boolean isLocked = false;
-        try {
-            isLocked = lock.tryLock();
-            if (isLocked) {
-                synchronized (lockObject) {
-                    if (retrofit == null || !baseUrl.equalsIgnoreCase(currentClientBaseUrl)) {
-                        if (url == null || url.isEmpty()) {
-                            return null;
-                        }
+    private static final class Transport {
+        final String baseUrl;
+        final Retrofit retrofit;
+        final ServerAPI api;
 
-                        if (!baseUrl.equalsIgnoreCase(currentClientBaseUrl)) {
-                            CloudCityLogger.w(TAG, "URL has changed from previous Retrofit client's base URL, instantiating new client...");
-                        }
+        Transport(String baseUrl) {
+            this.baseUrl = baseUrl;
+            this.retrofit = new Retrofit.Builder()
+                    .baseUrl(baseUrl)
+                    .client(CustomClient.getUnsafeOkHttpClient())
+                    .addConverterFactory(GsonConverterFactory.create(CloudCityGson.get()))
+                    // callbacks of enqueued calls run on OkHttp's threads instead of the main thread,
+                    // so they can touch the outbox database; post to the main thread for the UI
+                    .callbackExecutor(Runnable::run)
+                    .build();
+            this.api = retrofit.create(ServerAPI.class);
+        }
+    }
 
-                        retrofit = new Retrofit.Builder()
-                                .baseUrl(baseUrl)
-                                .client(CustomClient.getUnsafeOkHttpClient())
-                                .addConverterFactory(GsonConverterFactory.create())
-                                .build();
-                        currentClientBaseUrl = baseUrl;
-                    }
+    private static volatile Transport transport;
 
-                    return retrofit;
-                }
-            }
-        } finally {
-            // The finally is executed always, so even though we return in the locked part, it will still unlock
-            if (isLocked) {
-                lock.unlock();
-            }
+    /**
+     * Get the transport for the URL. The memoized transport is reused as long as the URL stays the same;
+     * when the URL changes, a new one is built and published for the next callers.
+     * <p>
+     * Doesn't lock: two threads seeing a new URL at the same time may both build a transport, and
+     * the last one wins, which is harmless as they share the same OkHttp client.
+     */
+    @Nullable
+    private static Transport getTransport(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        String baseUrl = String.format(Locale.US, "https://%s/", url);
+        Transport current = transport;
+        if (current != null && baseUrl.equalsIgnoreCase(current.baseUrl)) {
+            return current;
         }
+        if (current != null) {
+            CloudCityLogger.w(TAG, "URL has changed from previous Retrofit client's base URL, instantiating new client...");
+        }
+        current = new Transport(baseUrl);
+        transport = current;
+        return current;
+    }
+
+    /**
+     * Get retrofit client to be used for the communication, see {@link #getServerAPI(String)}
+     *
+     * @return Instance of retrofit client to be used, or null if the URL is empty
+     */
+    @Nullable
+    public static Retrofit getRetrofitClient(String url) {
+        Transport current = getTransport(url);
+        return current != null ? current.retrofit : null;
+    }
 
-        // Return null otherwise if we couldn't lock and initialize, or rather return whatever we had before...
-        return retrofit;
+    /**
+     * Get the {@link ServerAPI} proxy for the URL, created once per URL instead of once per request
+     *
+     * @return the proxy, or null if the URL is empty
+     */
+    @Nullable
+    public static ServerAPI getServerAPI(String url) {
+        Transport current = getTransport(url);
+        return current != null ? current.api : null;
     }
 }
@@ -1,6 +1,7 @@
 package cloudcity.networking;
 
 import cloudcity.networking.models.NetworkDataModelRequest;
+import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.Header;
@@ -16,4 +17,14 @@ public interface ServerAPI {
     @POST("/api/sensor-events")
     Call<Void> sendData(@Header("Authorization") String token, @Body NetworkDataModelRequest request);
 
+    /**
+     * Same as {@link #sendData(String, NetworkDataModelRequest)}, for a request body which is already JSON
+     */
+    @Headers({
+            "Accept: application/json",
+            "Content-Type: application/json"
+    })
+    @POST("/api/sensor-events")
+    Call<Void> sendRawData(@Header("Authorization") String token, @Body RequestBody request);
+
 }
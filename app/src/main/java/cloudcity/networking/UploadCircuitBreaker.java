@@ -0,0 +1,271 @@
+package cloudcity.networking;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import cloudcity.util.CloudCityLogger;
+import okhttp3.Headers;
+
+/**
+ * Decides whether an upload to the Cloud City server may go out now, shared by every upload so a
+ * degraded server isn't hit by each of them on its own.
+ * <p>
+ * Every failed upload pushes the next one back by a delay that doubles with every consecutive
+ * failure, up to {@link #MAX_DELAY_MS}, with jitter so devices don't retry in lockstep. A
+ * {@code Retry-After} from the server is honored instead, if it's longer.
+ * <p>
+ * After {@link #FAILURE_THRESHOLD} consecutive failures the breaker opens: once the delay is over,
+ * a single probe is let through (half open), and only if it succeeds, uploads go out normally again.
+ * A probe which didn't report back within {@link #PROBE_TIMEOUT_MS} counts as lost, and the next
+ * upload probes instead.
+ * <p>
+ * A rejected token (401 or 403) opens the breaker right away for {@link #MAX_DELAY_MS}, as no upload
+ * can succeed until the settings are changed, which {@link #reset()}s it.
+ * <p>
+ * Thread safe.
+ */
+public class UploadCircuitBreaker {
+    private static final String TAG = "UploadCircuitBreaker";
+
+    public enum State {
+        /**
+         * Uploads go out, after the backoff delay of the last failure if there was one
+         */
+        CLOSED,
+        /**
+         * Too many consecutive failures, nothing goes out until the delay is over
+         */
+        OPEN,
+        /**
+         * One probe is out, nothing else goes out until it's done
+         */
+        HALF_OPEN
+    }
+
+    static final long BASE_DELAY_MS = 1000;
+    static final long MAX_DELAY_MS = 5 * 60 * 1000;
+    // a server asking for more than this is likely misconfigured, don't stop uploading for longer
+    static final long MAX_RETRY_AFTER_MS = 60 * 60 * 1000;
+    static final int FAILURE_THRESHOLD = 5;
+    // well past the client's connect, write and read timeouts together
+    static final long PROBE_TIMEOUT_MS = 2 * 60 * 1000;
+
+    // uses of the random are synchronized on the breaker, a ThreadLocalRandom can't be shared like that
+    private static final UploadCircuitBreaker INSTANCE = new UploadCircuitBreaker(SystemClock::elapsedRealtime, new Random());
+
+    private final LongSupplier clock;
+    private final Random random;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long nextAttemptAt = 0;
+    private long probeStartedAt = 0;
+
+    private long attempts = 0;
+    private long failures = 0;
+    private long shortCircuited = 0;
+    private long opened = 0;
+
+    public static UploadCircuitBreaker getInstance() {
+        return INSTANCE;
+    }
+
+    UploadCircuitBreaker(@NonNull LongSupplier clock, @NonNull Random random) {
+        this.clock = clock;
+        this.random = random;
+    }
+
+    /**
+     * Ask whether an upload may go out now. If so, it's counted as an attempt, and its outcome has
+     * to be reported with {@link #recordResponse(int, Headers)} or {@link #recordFailure()}.
+     *
+     * @return true if the upload may go out
+     */
+    public synchronized boolean tryAcquire() {
+        long now = clock.getAsLong();
+        if (state == State.HALF_OPEN && now - probeStartedAt >= PROBE_TIMEOUT_MS) {
+            CloudCityLogger.w(TAG, "the probe didn't report back within " + PROBE_TIMEOUT_MS + " ms, probing again");
+            probeStartedAt = now;
+            attempts++;
+            return true;
+        }
+        if (now < nextAttemptAt || state == State.HALF_OPEN) {
+            shortCircuited++;
+            return false;
+        }
+        if (state == State.OPEN) {
+            CloudCityLogger.d(TAG, "half open, probing the server");
+            state = State.HALF_OPEN;
+            probeStartedAt = now;
+        }
+        attempts++;
+        return true;
+    }
+
+    /**
+     * @return how long until {@link #tryAcquire()} lets the next upload out, 0 if it would now
+     */
+    public synchronized long getRemainingMillis() {
+        return Math.max(0, nextAttemptAt - clock.getAsLong());
+    }
+
+    /**
+     * Report the response to an upload. Client errors other than 408, 429 and the authentication
+     * errors mean the server is fine and didn't like the upload, so they don't count as failures here.
+     *
+     * @param code    the HTTP status code
+     * @param headers the response headers, for {@code Retry-After}
+     */
+    public void recordResponse(int code, @NonNull Headers headers) {
+        if (isRetryable(code)) {
+            recordFailure(retryAfterMillis(headers, System.currentTimeMillis()));
+        } else if (isAuthError(code)) {
+            recordAuthFailure();
+        } else {
+            recordSuccess();
+        }
+    }
+
+    /**
+     * Report an upload which failed without a response, e.g. a timeout
+     */
+    public void recordFailure() {
+        recordFailure(0);
+    }
+
+    synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            CloudCityLogger.d(TAG, "closed again after " + consecutiveFailures + " failures");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        nextAttemptAt = 0;
+    }
+
+    /**
+     * Close the breaker and forget the failures so far, e.g. once the server or token changed
+     */
+    public void reset() {
+        recordSuccess();
+    }
+
+    synchronized void recordAuthFailure() {
+        failures++;
+        consecutiveFailures++;
+        nextAttemptAt = clock.getAsLong() + MAX_DELAY_MS;
+        if (state != State.OPEN) {
+            if (state == State.CLOSED) {
+                opened++;
+            }
+            state = State.OPEN;
+            CloudCityLogger.w(TAG, "open, the token was rejected, next probe in " + MAX_DELAY_MS + " ms");
+        }
+    }
+
+    synchronized void recordFailure(long retryAfterMillis) {
+        failures++;
+        consecutiveFailures++;
+        long backoff = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(consecutiveFailures - 1, 20));
+        // equal jitter: at least half the backoff, so the delay still grows with every failure
+        long delay = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+        delay = Math.max(delay, Math.min(retryAfterMillis, MAX_RETRY_AFTER_MS));
+        nextAttemptAt = clock.getAsLong() + delay;
+
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD)) {
+            if (state == State.CLOSED) {
+                opened++;
+            }
+            state = State.OPEN;
+            CloudCityLogger.w(TAG, "open after " + consecutiveFailures + " failures, next probe in " + delay + " ms");
+        }
+    }
+
+    /**
+     * @param code an HTTP status code
+     * @return whether the same request may succeed later: timeouts, rate limiting and server errors
+     */
+    public static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code >= 500;
+    }
+
+    /**
+     * @param code an HTTP status code
+     * @return whether the server rejected the token, so no upload can succeed with it
+     */
+    public static boolean isAuthError(int code) {
+        return code == 401 || code == 403;
+    }
+
+    /**
+     * @param headers   response headers
+     * @param nowMillis the current wall clock time, for a {@code Retry-After} date
+     * @return how long the server asked to wait, 0 if it didn't
+     */
+    static long retryAfterMillis(@NonNull Headers headers, long nowMillis) {
+        String value = headers.get("Retry-After");
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = headers.getDate("Retry-After");
+            return date != null ? Math.max(0, date.getTime() - nowMillis) : 0;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return how many uploads were let out
+     */
+    public synchronized long getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return how many uploads failed, without a response, with a retryable one or a rejected token
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return how many uploads weren't let out because of backoff or the open breaker
+     */
+    public synchronized long getShortCircuited() {
+        return shortCircuited;
+    }
+
+    /**
+     * @return how often the breaker opened
+     */
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "UploadCircuitBreaker{" +
+                "state=" + state +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", remainingMillis=" + Math.max(0, nextAttemptAt - clock.getAsLong()) +
+                ", attempts=" + attempts +
+                ", failures=" + failures +
+                ", shortCircuited=" + shortCircuited +
+                ", opened=" + opened +
+                '}';
+    }
+}
@@ -1,10 +1,13 @@
 package cloudcity.networking.models;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
 import android.telephony.CellInfo;
 
 import androidx.annotation.Nullable;
 
+import java.io.IOException;
+
 public class CellInfoModel {
 
     private Integer earfcn;
@@ -63,4 +66,14 @@ public class CellInfoModel {
     public void setDummy(Integer dummy) {
         this.dummy = dummy;
     }
+
+    void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        ModelJson.write(out, "earfcn", earfcn);
+        ModelJson.write(out, "pci", pci);
+        ModelJson.write(out, "cellId", cellId);
+        ModelJson.write(out, "eNodeBId", eNodeBId);
+        ModelJson.write(out, "dummy_cell_info", dummy);
+        out.endObject();
+    }
 }
@@ -6,6 +6,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 /**
  * Class combining {@link CellInfoModel} and {@link MeasurementsModel} into one
@@ -231,4 +234,25 @@ public class ExtendedCellInfoModel {
     public void setCellType(int newType) { this.cellType = newType; }
 
     public int getCellType() { return cellType; }
+
+    void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        ModelJson.write(out, "earfcn", earfcn);
+        ModelJson.write(out, "pci", pci);
+        ModelJson.write(out, "cellId", cellId);
+        ModelJson.write(out, "eNodeBId", eNodeBId);
+        ModelJson.write(out, "dummy_cell_info", dummyCell);
+        ModelJson.write(out, "rsrp", rsrp);
+        ModelJson.write(out, "rsrq", rsrq);
+        ModelJson.write(out, "rssnr", rssnr);
+        ModelJson.write(out, "csirsrp", csirsrp);
+        ModelJson.write(out, "csirsrq", csirsrq);
+        ModelJson.write(out, "csisinr", csisinr);
+        ModelJson.write(out, "ssrsrp", ssrsrp);
+        ModelJson.write(out, "ssrsrq", ssrsrq);
+        ModelJson.write(out, "sssinr", sssinr);
+        ModelJson.write(out, "dummy_value", dummyMeasurement);
+        out.name("cell_type").value(cellType);
+        out.endObject();
+    }
 }
@@ -5,6 +5,9 @@ import android.location.Location;
 import androidx.annotation.NonNull;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 import cloudcity.dataholders.Iperf3MetricsPOJO;
 import cloudcity.dataholders.PingMetricsPOJO;
@@ -40,6 +43,15 @@ public class Iperf3NetworkDataModel extends NetworkDataModel {
         // but could use them in the cell_info
         this.cellData = new ExtendedCellInfoModel(measurementsModel, cellInfoModel);
     }
+
+    @Override
+    void writeJsonFields(JsonWriter out) throws IOException {
+        ModelJson.write(out, "category", category);
+        ModelJson.write(out, "accuracy", accuracy);
+        ModelJson.write(out, "speed", speed);
+        out.name("cell_info");
+        cellData.writeJson(out);
+    }
 }
 
 class Iperf3ValuesModel extends NetworkDataModel.NetworkDataModelValues {
@@ -116,4 +128,30 @@ class Iperf3ValuesModel extends NetworkDataModel.NetworkDataModelValues {
         PLmax = packageLossMetrics.getPLmax();
         PLlast = packageLossMetrics.getPLlast();
     }
+
+    @Override
+    void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        ModelJson.write(out, "upload_min", ULmin);
+        ModelJson.write(out, "upload_median", ULmedian);
+        ModelJson.write(out, "upload_mean", ULmean);
+        ModelJson.write(out, "upload_max", ULmax);
+        ModelJson.write(out, "upload_last", ULlast);
+        ModelJson.write(out, "download_min", DLmin);
+        ModelJson.write(out, "download_median", DLmedian);
+        ModelJson.write(out, "download_mean", DLmean);
+        ModelJson.write(out, "download_max", DLmax);
+        ModelJson.write(out, "download_last", DLlast);
+        ModelJson.write(out, "ping_RTT_min", RTTmin);
+        ModelJson.write(out, "ping_RTT_median", RTTmedian);
+        ModelJson.write(out, "ping_RTT_mean", RTTmean);
+        ModelJson.write(out, "ping_RTT_max", RTTmax);
+        ModelJson.write(out, "ping_RTT_last", RTTlast);
+        ModelJson.write(out, "ping_package_loss_min", PLmin);
+        ModelJson.write(out, "ping_package_loss_median", PLmedian);
+        ModelJson.write(out, "ping_package_loss_mean", PLmean);
+        ModelJson.write(out, "ping_package_loss_max", PLmax);
+        ModelJson.write(out, "ping_package_loss_last", PLlast);
+        out.endObject();
+    }
 }
@@ -3,6 +3,9 @@ package cloudcity.networking.models;
 import android.telephony.CellInfo;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 public class MeasurementsModel extends NetworkDataModel.NetworkDataModelValues {
 
@@ -135,6 +138,22 @@ public class MeasurementsModel extends NetworkDataModel.NetworkDataModelValues {
 
     public int getCellType() { return cellType; }
 
+    @Override
+    void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        ModelJson.write(out, "rsrp", rsrp);
+        ModelJson.write(out, "rsrq", rsrq);
+        ModelJson.write(out, "rssnr", rssnr);
+        ModelJson.write(out, "csirsrp", csirsrp);
+        ModelJson.write(out, "csirsrq", csirsrq);
+        ModelJson.write(out, "csisinr", csisinr);
+        ModelJson.write(out, "ssrsrp", ssrsrp);
+        ModelJson.write(out, "ssrsrq", ssrsrq);
+        ModelJson.write(out, "sssinr", sssinr);
+        ModelJson.write(out, "dummy_value", dummy);
+        out.endObject();
+    }
+
     @Override
     public String toString() {
         return "MeasurementsModel{" +
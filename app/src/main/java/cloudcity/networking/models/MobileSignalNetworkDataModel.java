@@ -5,6 +5,9 @@ import android.location.Location;
 import androidx.annotation.NonNull;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 public class MobileSignalNetworkDataModel extends NetworkDataModel {
 
@@ -58,6 +61,16 @@ public class MobileSignalNetworkDataModel extends NetworkDataModel {
         this.cellData = cellData;
     }
 
+    @Override
+    void writeJsonFields(JsonWriter out) throws IOException {
+        ModelJson.write(out, "category", category);
+        ModelJson.write(out, "accuracy", accuracy);
+        ModelJson.write(out, "speed", speed);
+        if (cellData != null) {
+            out.name("cell_info");
+            cellData.writeJson(out);
+        }
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,31 @@
+package cloudcity.networking.models;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Helpers for the hand-written {@code writeJson} methods of the models, which write the same JSON as
+ * Gson's reflection: fields in declaration order, subclass fields before superclass fields, and
+ * null fields left out.
+ */
+final class ModelJson {
+    private ModelJson() {
+    }
+
+    static void write(JsonWriter out, String name, Number value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    static void write(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    static void write(JsonWriter out, String name, double value) throws IOException {
+        out.name(name).value(value);
+    }
+}
@@ -1,6 +1,9 @@
 package cloudcity.networking.models;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 /**
  * Base class for our network data
@@ -21,7 +24,36 @@ public class NetworkDataModel {
         this.values = values;
     }
 
-    static class NetworkDataModelValues { }
+    static class NetworkDataModelValues {
+        void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.endObject();
+        }
+    }
+
+    /**
+     * Write this model as JSON, the same as Gson's reflection would but without it
+     *
+     * @param out the writer to write to
+     * @throws IOException if writing failed
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        writeJsonFields(out);
+        ModelJson.write(out, "lat", latitude);
+        ModelJson.write(out, "lon", longitude);
+        if (values != null) {
+            out.name("values");
+            values.writeJson(out);
+        }
+        out.endObject();
+    }
+
+    /**
+     * Write the fields of a subclass; they come before the ones of this class, like Gson orders them
+     */
+    void writeJsonFields(JsonWriter out) throws IOException {
+    }
 
     public boolean hasNonZeroLatitudeAndLongitude() {
         return isNonZero(latitude) && isNonZero(longitude);
@@ -1,7 +1,9 @@
 package cloudcity.networking.models;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,4 +35,27 @@ public class NetworkDataModelRequest {
     public void clear() {
         data.clear();
     }
+
+    /**
+     * Write this request as JSON, the same as Gson's reflection would but without it
+     *
+     * @param out the writer to write to
+     * @throws IOException if writing failed
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        if (data != null) {
+            out.name("sensor_events");
+            out.beginArray();
+            for (NetworkDataModel model : data) {
+                if (model == null) {
+                    out.nullValue();
+                } else {
+                    model.writeJson(out);
+                }
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
 }
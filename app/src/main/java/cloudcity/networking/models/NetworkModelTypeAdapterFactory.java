@@ -0,0 +1,53 @@
+package cloudcity.networking.models;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Serializes {@link NetworkDataModelRequest} and every {@link NetworkDataModel} with their hand-written
+ * {@code writeJson} methods instead of reflection. They're written on every upload, read never, so
+ * reading is left to Gson's reflection.
+ */
+public class NetworkModelTypeAdapterFactory implements TypeAdapterFactory {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> raw = type.getRawType();
+        if (raw == NetworkDataModelRequest.class) {
+            TypeAdapter<NetworkDataModelRequest> reflective = gson.getDelegateAdapter(this, TypeToken.get(NetworkDataModelRequest.class));
+            return (TypeAdapter<T>) new TypeAdapter<NetworkDataModelRequest>() {
+                @Override
+                public void write(JsonWriter out, NetworkDataModelRequest value) throws IOException {
+                    value.writeJson(out);
+                }
+
+                @Override
+                public NetworkDataModelRequest read(JsonReader in) throws IOException {
+                    return reflective.read(in);
+                }
+            }.nullSafe();
+        }
+        if (NetworkDataModel.class.isAssignableFrom(raw)) {
+            TypeAdapter<T> reflective = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<T>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    ((NetworkDataModel) value).writeJson(out);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    return reflective.read(in);
+                }
+            }.nullSafe();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,305 @@
+package cloudcity.networking.outbox;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cloudcity.networking.CloudCityGson;
+import cloudcity.networking.CloudCityHelpers;
+import cloudcity.networking.UploadCircuitBreaker;
+import cloudcity.networking.models.NetworkDataModel;
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Persistent store-and-forward queue for Cloud City sensor events.
+ * <p>
+ * Every event is stored in the {@link OutboxDatabase} first and only deleted once the server accepted
+ * it, so events taken while offline (or while the app gets killed) are sent once the device is
+ * back online. {@link #drain(String, String, int, CloudCityHelpers.SendCallback)} sends the oldest
+ * events in batches of the configured size, asynchronously, so neither the caller nor the sampler
+ * ever waits for the server.
+ * <p>
+ * Events older than {@link #MAX_AGE_MS} are dropped, and so are the oldest events once there are
+ * more than {@link #MAX_EVENTS}. A batch the server rejects for good (a client error other than 408,
+ * 429, 401 and 403) is split in halves and sent again, until the events it doesn't take are found;
+ * those are dropped, so they don't hold back the ones queued after them.
+ * <p>
+ * Thread safe. {@link #enqueue(NetworkDataModel)} and {@link #drain(String, String, int, CloudCityHelpers.SendCallback)}
+ * run their database queries on the caller's thread, so they must not be called from the main thread.
+ */
+public class CloudCityOutbox {
+    private static final String TAG = "CloudCityOutbox";
+
+    /**
+     * Most events kept, a bit more than half a day at one event per second
+     */
+    public static final long MAX_EVENTS = 50_000;
+    /**
+     * Events older than this are dropped instead of being sent
+     */
+    public static final long MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+    /**
+     * Most events sent in one request, whatever the configured batch size, to keep a request body
+     * and the retries of a failed one small
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+    /**
+     * Most batches sent at the same time
+     */
+    public static final int MAX_IN_FLIGHT = 2;
+    private static final long NO_REWIND = Long.MAX_VALUE;
+    private static final int RETENTION_CHECK_INTERVAL = 600;
+
+    private static volatile CloudCityOutbox INSTANCE;
+
+    private final Context context;
+    private OutboxEventDao dao;
+
+    private volatile boolean online = true;
+    private final AtomicLong depth = new AtomicLong(0);
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicLong expired = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong refused = new AtomicLong(0);
+    private int enqueuedSinceRetentionCheck = 0;
+
+    // the id of the newest event handed to a request; the next batch starts after it
+    private long cursor = 0;
+    private volatile int inFlight = 0;
+    // where the cursor goes back to once all batches in flight are done, after one of them failed
+    private long rewindTo = NO_REWIND;
+    // after the server refused a batch, the batches up to this id are at most bisectSize events long
+    private long bisectUntil = 0;
+    private int bisectSize = MAX_BATCH_SIZE;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+            boolean validated = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+            if (validated != online) {
+                CloudCityLogger.d(TAG, validated ? "back online, " + depth.get() + " events queued" : "offline");
+            }
+            online = validated;
+        }
+
+        @Override
+        public void onLost(@NonNull Network network) {
+            CloudCityLogger.d(TAG, "offline");
+            online = false;
+        }
+    };
+
+    public static CloudCityOutbox getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (CloudCityOutbox.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new CloudCityOutbox(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private CloudCityOutbox(Context context) {
+        this.context = context;
+        ConnectivityManager cm = context.getSystemService(ConnectivityManager.class);
+        if (cm != null) {
+            cm.registerDefaultNetworkCallback(networkCallback);
+        }
+    }
+
+    private OutboxEventDao dao() {
+        if (dao == null) {
+            dao = OutboxDatabase.getDatabase(context).outboxEventDao();
+            applyRetention();
+            depth.set(dao.count());
+            CloudCityLogger.d(TAG, "opened with " + depth.get() + " events queued");
+        }
+        return dao;
+    }
+
+    /**
+     * Store an event until it's sent. Events without a location are rejected, as the server would
+     * reject them as well.
+     *
+     * @param event the event to store
+     * @return false if the event was rejected
+     */
+    public synchronized boolean enqueue(@NonNull NetworkDataModel event) {
+        if (!event.hasNonZeroLatitudeAndLongitude()) {
+            CloudCityLogger.e(TAG, "enqueue: event's location information was (0,0) - not queueing it!");
+            rejected.incrementAndGet();
+            return false;
+        }
+        dao().insert(new OutboxEvent(System.currentTimeMillis(), CloudCityGson.get().toJson(event)));
+        depth.incrementAndGet();
+        if (++enqueuedSinceRetentionCheck >= RETENTION_CHECK_INTERVAL) {
+            applyRetention();
+        }
+        return true;
+    }
+
+    /**
+     * Start sending the oldest events, without waiting for the server. At most {@link #MAX_IN_FLIGHT}
+     * batches are in flight at a time; whenever one is accepted, the next one is started, until the
+     * outbox is empty.
+     * <p>
+     * A batch which failed stays in the outbox, and no new batch is started until the ones still in
+     * flight are done; the next call then sends it again, once the {@link UploadCircuitBreaker} lets
+     * it. A batch the server refused is sent again right away in halves, and a single event it
+     * refuses is dropped.
+     *
+     * @param address   the Cloud City server
+     * @param token     the Cloud City token
+     * @param batchSize most events sent in one request, up to {@link #MAX_BATCH_SIZE}
+     * @param callback  called with the outcome of every batch, on one of OkHttp's threads
+     */
+    public synchronized void drain(@NonNull String address, @NonNull String token, int batchSize,
+                                   @NonNull CloudCityHelpers.SendCallback callback) {
+        batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        if (UploadCircuitBreaker.getInstance().getRemainingMillis() > 0) {
+            // backing off, don't even read the batch
+            callback.onDone(false);
+            return;
+        }
+        OutboxEventDao dao = dao();
+        while (inFlight < MAX_IN_FLIGHT && rewindTo == NO_REWIND && online) {
+            List<OutboxEvent> events = dao.getOldestAfter(cursor, cursor < bisectUntil ? Math.min(bisectSize, batchSize) : batchSize);
+            if (events.isEmpty()) {
+                return;
+            }
+            List<String> payloads = new ArrayList<>(events.size());
+            List<Long> ids = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                payloads.add(event.payload);
+                ids.add(event.id);
+            }
+            int size = batchSize;
+            if (!CloudCityHelpers.sendEvents(address, token, payloads, code -> onBatchDone(address, token, size, ids, code, callback))) {
+                callback.onDone(false);
+                return;
+            }
+            cursor = ids.get(ids.size() - 1);
+            inFlight++;
+        }
+    }
+
+    private void onBatchDone(String address, String token, int batchSize, List<Long> ids, int code,
+                             CloudCityHelpers.SendCallback callback) {
+        boolean success = code >= 200 && code < 300;
+        boolean failed = false;
+        boolean more;
+        synchronized (this) {
+            inFlight--;
+            if (success) {
+                // retention may have dropped some of them in the meantime
+                int deleted = dao.delete(ids);
+                depth.addAndGet(-deleted);
+                sent.addAndGet(deleted);
+            } else if (code == CloudCityHelpers.NO_RESPONSE || UploadCircuitBreaker.isRetryable(code)
+                    || UploadCircuitBreaker.isAuthError(code)) {
+                CloudCityLogger.w(TAG, "drain: sending failed with " + code + ", " + depth.get() + " events queued");
+                rewindTo = Math.min(rewindTo, ids.get(0) - 1);
+                failed = true;
+            } else if (ids.size() == 1) {
+                CloudCityLogger.e(TAG, "drain: server refused event " + ids.get(0) + " with " + code + ", dropping it");
+                int deleted = dao.delete(ids);
+                depth.addAndGet(-deleted);
+                refused.addAndGet(deleted);
+            } else {
+                // sending it again as it is would be refused again, and hold back everything after it
+                CloudCityLogger.w(TAG, "drain: server refused a batch of " + ids.size() + " events with " + code + ", splitting it");
+                bisectSize = ids.size() / 2;
+                bisectUntil = Math.max(bisectUntil, ids.get(ids.size() - 1));
+                rewindTo = Math.min(rewindTo, ids.get(0) - 1);
+            }
+            if (inFlight == 0 && rewindTo != NO_REWIND) {
+                // the batches which failed, and any after them, are sent again by the next drain
+                cursor = rewindTo;
+                rewindTo = NO_REWIND;
+            }
+            if (rewindTo == NO_REWIND && cursor >= bisectUntil) {
+                // past the refused batch
+                bisectSize = MAX_BATCH_SIZE;
+            }
+            more = !failed && rewindTo == NO_REWIND && depth.get() > 0;
+        }
+        callback.onDone(success);
+        if (more) {
+            drain(address, token, batchSize, callback);
+        }
+    }
+
+    private void applyRetention() {
+        enqueuedSinceRetentionCheck = 0;
+        int dropped = dao.deleteOlderThan(System.currentTimeMillis() - MAX_AGE_MS) + dao.keepNewest(MAX_EVENTS);
+        if (dropped > 0) {
+            expired.addAndGet(dropped);
+            depth.set(dao.count());
+            CloudCityLogger.w(TAG, "dropped " + dropped + " events past retention, " + depth.get() + " events queued");
+        }
+    }
+
+    /**
+     * @return whether the default network currently reaches the internet
+     */
+    public boolean isOnline() {
+        return online;
+    }
+
+    /**
+     * @return how many events are waiting to be sent
+     */
+    public long getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return how many events were sent successfully
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return how many events were dropped because they were too old or the outbox was full
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return how many events were rejected because they had no location
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return how many events were dropped because the server refused them
+     */
+    public long getRefused() {
+        return refused.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CloudCityOutbox{" +
+                "online=" + online +
+                ", depth=" + depth.get() +
+                ", inFlight=" + inFlight +
+                ", sent=" + sent.get() +
+                ", expired=" + expired.get() +
+                ", rejected=" + rejected.get() +
+                ", refused=" + refused.get() +
+                '}';
+    }
+}
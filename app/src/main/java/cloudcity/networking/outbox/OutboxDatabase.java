@@ -0,0 +1,30 @@
+package cloudcity.networking.outbox;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+@Database(
+    entities = {OutboxEvent.class},
+    version = 1
+)
+public abstract class OutboxDatabase extends RoomDatabase {
+    private static volatile OutboxDatabase INSTANCE;
+
+    public static OutboxDatabase getDatabase(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (OutboxDatabase.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
+                            OutboxDatabase.class, "cloud_city_outbox")
+                        .build();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public abstract OutboxEventDao outboxEventDao();
+}
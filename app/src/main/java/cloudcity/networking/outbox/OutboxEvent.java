@@ -0,0 +1,32 @@
+package cloudcity.networking.outbox;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * One sensor event waiting in the {@link CloudCityOutbox}, already serialized to the JSON the
+ * server expects in {@code sensor_events}
+ */
+@Entity(tableName = "cloud_city_outbox")
+public class OutboxEvent {
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "created_at")
+    public long createdAt;
+
+    @NonNull
+    @ColumnInfo(name = "payload")
+    public String payload = "";
+
+    public OutboxEvent(long createdAt, @NonNull String payload) {
+        this.createdAt = createdAt;
+        this.payload = payload;
+    }
+
+    public OutboxEvent() {
+
+    }
+}
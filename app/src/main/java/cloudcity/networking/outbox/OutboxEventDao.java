@@ -0,0 +1,28 @@
+package cloudcity.networking.outbox;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface OutboxEventDao {
+    @Insert
+    long insert(OutboxEvent event);
+
+    @Query("SELECT * FROM cloud_city_outbox WHERE id > :after ORDER BY id LIMIT :limit")
+    List<OutboxEvent> getOldestAfter(long after, int limit);
+
+    @Query("SELECT COUNT(*) FROM cloud_city_outbox")
+    long count();
+
+    @Query("DELETE FROM cloud_city_outbox WHERE id IN (:ids)")
+    int delete(List<Long> ids);
+
+    @Query("DELETE FROM cloud_city_outbox WHERE created_at < :cutoff")
+    int deleteOlderThan(long cutoff);
+
+    @Query("DELETE FROM cloud_city_outbox WHERE id NOT IN (SELECT id FROM cloud_city_outbox ORDER BY id DESC LIMIT :keep)")
+    int keepNewest(long keep);
+}
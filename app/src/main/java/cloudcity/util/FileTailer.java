@@ -0,0 +1,120 @@
+package cloudcity.util;
+
+import android.os.FileObserver;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs a task whenever a file is written to, for following a file while another process appends to
+ * it, instead of polling it at a fixed rate.
+ * <p>
+ * The file's directory is watched with a {@link FileObserver}, so the file doesn't have to exist yet.
+ * inotify isn't reliable on every storage, so the task also runs on a timer, which backs off from
+ * {@link #MIN_DELAY_MS} to {@link #MAX_DELAY_MS} for as long as the task finds nothing new.
+ * <p>
+ * The task runs on the thread of the {@link Handler} passed in the constructor.
+ */
+public class FileTailer {
+    private static final String TAG = "FileTailer";
+    static final long MIN_DELAY_MS = 100;
+    static final long MAX_DELAY_MS = 2000;
+    private static final int EVENTS = FileObserver.CREATE | FileObserver.MODIFY
+            | FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO;
+
+    private final File file;
+    private final Handler handler;
+    private final BooleanSupplier task;
+
+    private FileObserver observer;
+    private volatile boolean running = false;
+    // only touched on the handler thread
+    private long delayMillis = MIN_DELAY_MS;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            boolean progress = false;
+            try {
+                progress = task.getAsBoolean();
+            } catch (Exception e) {
+                CloudCityLogger.e(TAG, file.getName() + ": exception " + e + " happened during tick!", e);
+            }
+            delayMillis = progress ? MIN_DELAY_MS : Math.min(MAX_DELAY_MS, delayMillis * 2);
+            synchronized (FileTailer.this) {
+                // the task may have called stop()
+                if (running) {
+                    handler.removeCallbacks(this);
+                    handler.postDelayed(this, delayMillis);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param file    the file to follow
+     * @param handler the handler whose thread will run the task
+     * @param task    reads what was appended to the file, and returns true if there was anything
+     */
+    public FileTailer(@NonNull File file, @NonNull Handler handler, @NonNull BooleanSupplier task) {
+        this.file = file;
+        this.handler = handler;
+        this.task = task;
+    }
+
+    /**
+     * Start following the file; the task runs right away. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        File dir = file.getParentFile();
+        if (dir != null) {
+            observer = new FileObserver(dir, EVENTS) {
+                @Override
+                public void onEvent(int event, @Nullable String path) {
+                    if (file.getName().equals(path)) {
+                        wake();
+                    }
+                }
+            };
+            observer.startWatching();
+        }
+        handler.post(tick);
+    }
+
+    /**
+     * Run the task now instead of waiting for the timer, e.g. once the writer is known to be done
+     */
+    public synchronized void wake() {
+        if (running) {
+            handler.removeCallbacks(tick);
+            handler.post(tick);
+        }
+    }
+
+    /**
+     * Stop following the file. A task which is already running will finish.
+     */
+    public synchronized void stop() {
+        running = false;
+        handler.removeCallbacks(tick);
+        if (observer != null) {
+            observer.stopWatching();
+            observer = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,174 @@
+package cloudcity.util;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-rate replacement for the usual "do the work, then {@code postDelayed(this, interval)}" loop.
+ * <p>
+ * Every tick is scheduled relative to the <i>planned</i> time of the previous tick instead of the time
+ * the previous tick finished, so a slow tick doesn't push the whole timeline back. When wall-clock
+ * alignment is requested, ticks land on multiples of the period (e.g. on every full second for a 1000ms
+ * period), which keeps samples of different devices and sessions comparable.
+ * <p>
+ * If a tick takes longer than the period, the ticks that couldn't be run in time are skipped rather than
+ * run back-to-back, and are counted in {@link #getMissedTicks()}.
+ * <p>
+ * The task runs on the thread of the {@link Handler} passed in the constructor.
+ */
+public class FixedRateScheduler {
+    private static final String TAG = "FixedRateScheduler";
+
+    private final Handler handler;
+    private final Runnable task;
+    private final String name;
+    private final boolean alignToWallClock;
+
+    private volatile long periodMillis;
+    private volatile boolean running = false;
+    /**
+     * Wall-clock time, in milliseconds, at which the upcoming tick is planned
+     */
+    private long nextTickMillis;
+
+    private final AtomicLong ticks = new AtomicLong(0);
+    private final AtomicLong missedTicks = new AtomicLong(0);
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            ticks.incrementAndGet();
+            try {
+                task.run();
+            } catch (Exception e) {
+                CloudCityLogger.e(TAG, name + ": exception " + e + " happened during tick!", e);
+            }
+            synchronized (FixedRateScheduler.this) {
+                if (running) {
+                    scheduleNext(System.currentTimeMillis());
+                }
+            }
+        }
+    };
+
+    /**
+     * @param name             name used when logging missed ticks
+     * @param handler          the handler whose thread will run the task
+     * @param periodMillis     the time between two ticks, in milliseconds
+     * @param alignToWallClock whether ticks should land on multiples of the period in wall-clock time
+     * @param task             the work to do on every tick
+     */
+    public FixedRateScheduler(@NonNull String name, @NonNull Handler handler, long periodMillis, boolean alignToWallClock, @NonNull Runnable task) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("periodMillis must be positive, was " + periodMillis);
+        }
+        this.name = name;
+        this.handler = handler;
+        this.periodMillis = periodMillis;
+        this.alignToWallClock = alignToWallClock;
+        this.task = task;
+    }
+
+    /**
+     * Start ticking. The first tick happens on the next period boundary if aligned to the wall clock,
+     * otherwise one period from now. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        long now = System.currentTimeMillis();
+        nextTickMillis = firstTickAfter(now);
+        postAt(nextTickMillis, now);
+    }
+
+    /**
+     * Stop ticking. A tick which is already running will finish, but no further ticks will be run.
+     */
+    public synchronized void stop() {
+        running = false;
+        handler.removeCallbacks(tick);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Change the period; takes effect from the next scheduled tick on
+     *
+     * @param newPeriodMillis the new time between two ticks, in milliseconds
+     */
+    public synchronized void setPeriod(long newPeriodMillis) {
+        if (newPeriodMillis <= 0) {
+            throw new IllegalArgumentException("periodMillis must be positive, was " + newPeriodMillis);
+        }
+        if (newPeriodMillis == periodMillis) {
+            return;
+        }
+        periodMillis = newPeriodMillis;
+        if (running) {
+            // re-plan the upcoming tick with the new period
+            handler.removeCallbacks(tick);
+            long now = System.currentTimeMillis();
+            nextTickMillis = firstTickAfter(now);
+            postAt(nextTickMillis, now);
+        }
+    }
+
+    public long getPeriod() {
+        return periodMillis;
+    }
+
+    /**
+     * @return how many ticks were run since this scheduler was created
+     */
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    /**
+     * @return how many ticks were skipped because a previous tick ran past their planned time
+     */
+    public long getMissedTicks() {
+        return missedTicks.get();
+    }
+
+    private void scheduleNext(long now) {
+        long period = periodMillis;
+        long next = nextTickMillis + period;
+        if (next <= now) {
+            // We're late; skip every tick whose time already passed
+            long missed = (now - next) / period + 1;
+            missedTicks.addAndGet(missed);
+            next += missed * period;
+            CloudCityLogger.d(TAG, name + ": tick overran, skipped " + missed + " tick(s), " + missedTicks.get() + " missed in total");
+        } else if (next - now > period) {
+            // The wall clock jumped backwards, start over from the current time
+            next = firstTickAfter(now);
+        }
+        nextTickMillis = next;
+        postAt(next, now);
+    }
+
+    private long firstTickAfter(long now) {
+        long period = periodMillis;
+        if (alignToWallClock) {
+            return (now / period + 1) * period;
+        }
+        return now + period;
+    }
+
+    private void postAt(long wallClockMillis, long now) {
+        // Handler works with the uptime clock, so convert the wall-clock target to an uptime one
+        handler.postAtTime(tick, SystemClock.uptimeMillis() + (wallClockMillis - now));
+    }
+}
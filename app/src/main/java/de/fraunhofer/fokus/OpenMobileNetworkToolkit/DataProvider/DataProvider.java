@@ -13,6 +13,7 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.location.Location;
 import android.location.LocationListener;
@@ -69,6 +70,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cloudcity.util.CloudCityLogger;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.CellInformations.CDMAInformation;
@@ -106,6 +108,18 @@ public class DataProvider extends TelephonyCallback implements LocationListener,
     private final BuildInformation buildInformation = new BuildInformation();
     // Time stamp, should be updated on each update of internal data caches
     private long ts = System.currentTimeMillis();
+    // Cached result of getTagsMap(), null if it has to be rebuilt
+    private volatile Map<String, String> tagsMap;
+    // Bumped on every invalidation, so a map built from stale values isn't cached
+    private final AtomicInteger tagsMapGeneration = new AtomicInteger(0);
+    // Both listeners are only weakly referenced by the framework, so we have to hold on to them
+    private final SharedPreferences.OnSharedPreferenceChangeListener tagsMapPreferenceListener = (prefs, key) -> invalidateTagsMap();
+    private final SubscriptionManager.OnSubscriptionsChangedListener tagsMapSubscriptionListener = new SubscriptionManager.OnSubscriptionsChangedListener() {
+        @Override
+        public void onSubscriptionsChanged() {
+            invalidateTagsMap();
+        }
+    };
 
     @SuppressLint("ObsoleteSdkInt")
     public DataProvider(Context context) {
@@ -119,7 +133,11 @@ public class DataProvider extends TelephonyCallback implements LocationListener,
             cm = (ConnectivityManager) ct.getSystemService(Context.CONNECTIVITY_SERVICE);
             tm = gv.getTm();
             sm = (SubscriptionManager) ct.getSystemService(Context.TELEPHONY_SUBSCRIPTION_SERVICE);
+            // IMSI and carrier privileges in the tags map depend on the current subscription
+            sm.addOnSubscriptionsChangedListener(ct.getMainExecutor(), tagsMapSubscriptionListener);
         }
+        // tags and measurement name in the tags map are logging preferences
+        spg.setListener(tagsMapPreferenceListener, SPType.logging_sp);
 
         // We need location permission otherwise logging is useless
         if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
@@ -691,11 +709,44 @@ public class DataProvider extends TelephonyCallback implements LocationListener,
     /**
      * return a Map of key values pairs to be used as tags in the influx points
      * List consist of device information and user defined tags
+     * <p>
+     * The map is built once and cached until the logging preferences or the subscriptions change.
      *
-     * @return Map of k,v strings
+     * @return immutable Map of k,v strings
      */
-    @SuppressLint("ObsoleteSdkInt")
     public Map<String, String> getTagsMap() {
+        Map<String, String> cached = tagsMap;
+        if (cached == null) {
+            int generation = tagsMapGeneration.get();
+            cached = Collections.unmodifiableMap(buildTagsMap());
+            if (generation == tagsMapGeneration.get()) {
+                tagsMap = cached;
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Drop the cached tags map, so the next {@link #getTagsMap()} builds it again
+     */
+    public void invalidateTagsMap() {
+        tagsMapGeneration.incrementAndGet();
+        tagsMap = null;
+    }
+
+    /**
+     * Stop invalidating the cached tags map on preference and subscription changes. Only needed for a
+     * DataProvider that is replaced, the one in {@link GlobalVars} lives as long as the process.
+     */
+    public void removeTagsMapListeners() {
+        spg.removeListener(SPType.logging_sp, tagsMapPreferenceListener);
+        if (sm != null) {
+            sm.removeOnSubscriptionsChangedListener(tagsMapSubscriptionListener);
+        }
+    }
+
+    @SuppressLint("ObsoleteSdkInt")
+    private Map<String, String> buildTagsMap() {
         String tags = spg.getSharedPreference(SPType.logging_sp).getString("tags", "").strip().replace(" ", "");
         Map<String, String> tags_map = Collections.emptyMap();
         if (!tags.isEmpty()) {
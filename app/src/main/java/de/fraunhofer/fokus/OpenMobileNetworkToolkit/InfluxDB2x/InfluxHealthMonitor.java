@@ -0,0 +1,126 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+
+import java.util.function.BooleanSupplier;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Pings an Influx server in the background and keeps the outcome in a flag, so writes only have to
+ * read the flag instead of pinging first.
+ * <p>
+ * A reachable server is pinged again after {@link #TTL_MS}. An unreachable one is pinged again
+ * sooner, after a delay that doubles with every failed ping up to {@link #MAX_BACKOFF_MS}. A failed
+ * write can ask for a check right away with {@link #requestCheck()}.
+ * <p>
+ * The server counts as reachable until the first ping says otherwise, so the first writes aren't
+ * dropped; the write API retries them anyway if it wasn't.
+ */
+public class InfluxHealthMonitor {
+    private static final String TAG = "InfluxHealthMonitor";
+    static final long TTL_MS = 30_000;
+    static final long BASE_BACKOFF_MS = 1000;
+    static final long MAX_BACKOFF_MS = 60_000;
+
+    private final String name;
+    private final BooleanSupplier ping;
+
+    private volatile boolean reachable = true;
+    private HandlerThread handlerThread;
+    private Handler handler;
+    // only touched on the handler thread
+    private int consecutiveFailures = 0;
+
+    private final Runnable check = new Runnable() {
+        @Override
+        public void run() {
+            boolean ok;
+            try {
+                ok = ping.getAsBoolean();
+            } catch (Exception e) {
+                CloudCityLogger.d(TAG, name + ": ping failed: " + e);
+                ok = false;
+            }
+            consecutiveFailures = ok ? 0 : consecutiveFailures + 1;
+            setReachable(ok);
+            long delay = ok ? TTL_MS : Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(consecutiveFailures - 1, 16));
+            synchronized (InfluxHealthMonitor.this) {
+                // stop() may have been called while pinging
+                if (handler != null) {
+                    handler.removeCallbacks(this);
+                    handler.postDelayed(this, delay);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param name used for the thread and in logs, e.g. the server URL
+     * @param ping pings the server; blocks, and returns true if it answered
+     */
+    public InfluxHealthMonitor(@NonNull String name, @NonNull BooleanSupplier ping) {
+        this.name = name;
+        this.ping = ping;
+    }
+
+    /**
+     * Start pinging, the first time right away
+     */
+    public synchronized void start() {
+        if (handlerThread != null) {
+            return;
+        }
+        handlerThread = new HandlerThread("InfluxHealthMonitor");
+        handlerThread.start();
+        handler = new Handler(handlerThread.getLooper());
+        handler.post(check);
+    }
+
+    /**
+     * Stop pinging. The flag keeps its last value.
+     */
+    public synchronized void stop() {
+        if (handlerThread == null) {
+            return;
+        }
+        handler.removeCallbacksAndMessages(null);
+        handlerThread.quitSafely();
+        handlerThread = null;
+        handler = null;
+    }
+
+    /**
+     * Ping now instead of waiting for the next scheduled ping, e.g. after a failed write
+     */
+    public synchronized void requestCheck() {
+        if (handler != null) {
+            handler.removeCallbacks(check);
+            handler.post(check);
+        }
+    }
+
+    /**
+     * Record that the server answered some other request, which is as good as a ping
+     */
+    public void reportReachable() {
+        setReachable(true);
+    }
+
+    /**
+     * @return whether the last ping was answered; cheap, doesn't ping
+     */
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    private void setReachable(boolean reachable) {
+        if (this.reachable != reachable) {
+            CloudCityLogger.d(TAG, name + (reachable ? " is reachable" : " is not reachable"));
+        }
+        this.reachable = reachable;
+    }
+}
@@ -0,0 +1,206 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * The thread all Influx I/O of every {@link InfluxdbConnection} runs on, instead of a new thread per
+ * write or flush.
+ * <p>
+ * Tasks run one at a time in the order they were submitted, so a flush always comes after the writes
+ * submitted before it. At most {@link #QUEUE_CAPACITY} tasks wait; when Influx is so slow that the
+ * queue is full, the oldest waiting task submitted with {@link #executeDroppable(Runnable)} is dropped,
+ * as a later flush does its job as well. Tasks carrying data are never dropped: if there's no such
+ * task to drop, a new droppable task is dropped itself, and a new task carrying data waits for room.
+ * The thread stops after a while without tasks.
+ */
+public final class InfluxIoExecutor {
+    private static final String TAG = "InfluxIoExecutor";
+    private static final String THREAD_NAME = "InfluxIoThread";
+    static final int QUEUE_CAPACITY = 64;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicLong submitted = new AtomicLong(0);
+    private static final AtomicLong completed = new AtomicLong(0);
+    private static final AtomicLong failed = new AtomicLong(0);
+    private static final AtomicLong dropped = new AtomicLong(0);
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private InfluxIoExecutor() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    if (pool.isShutdown()) {
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                    BlockingQueue<Runnable> queue = pool.getQueue();
+                    if (removeOldestDroppable(queue)) {
+                        dropped.incrementAndGet();
+                        CloudCityLogger.w(TAG, "Influx is falling behind, dropped the oldest flush. " + describe());
+                        pool.execute(runnable);
+                    } else if (runnable instanceof Task && ((Task) runnable).droppable) {
+                        dropped.incrementAndGet();
+                    } else if (THREAD_NAME.equals(Thread.currentThread().getName())) {
+                        // the I/O thread can't wait for room it has to make itself
+                        runnable.run();
+                    } else {
+                        CloudCityLogger.w(TAG, "Influx is falling behind, waiting for room. " + describe());
+                        try {
+                            queue.put(runnable);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("interrupted while waiting for room", e);
+                        }
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static boolean removeOldestDroppable(BlockingQueue<Runnable> queue) {
+        for (Iterator<Runnable> it = queue.iterator(); it.hasNext(); ) {
+            Runnable queued = it.next();
+            if (queued instanceof Task && ((Task) queued).droppable) {
+                return queue.remove(queued);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run a task on the Influx I/O thread, after all tasks submitted before it. It's never dropped;
+     * while the queue is full, the caller waits for room.
+     *
+     * @param task the task; an exception it throws is logged and counted
+     */
+    public static void execute(@NonNull Runnable task) {
+        submitted.incrementAndGet();
+        EXECUTOR.execute(new Task(task, false));
+    }
+
+    /**
+     * Same as {@link #execute(Runnable)}, for a task which carries no data of its own, e.g. a flush;
+     * it's dropped when the queue is full
+     *
+     * @param task the task; an exception it throws is logged and counted
+     */
+    public static void executeDroppable(@NonNull Runnable task) {
+        submitted.incrementAndGet();
+        EXECUTOR.execute(new Task(task, true));
+    }
+
+    /**
+     * Wait until the tasks submitted so far have run, e.g. before closing a connection they write to.
+     * Returns right away when called on the Influx I/O thread itself.
+     *
+     * @param timeoutMillis the most time to wait
+     * @return true if they ran in time
+     */
+    public static boolean awaitSubmitted(long timeoutMillis) {
+        if (THREAD_NAME.equals(Thread.currentThread().getName())) {
+            return true;
+        }
+        Future<?> marker = EXECUTOR.submit(() -> {
+        });
+        try {
+            marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            CloudCityLogger.w(TAG, "tasks didn't finish within " + timeoutMillis + " ms. " + describe());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return how many tasks were submitted
+     */
+    public static long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * @return how many tasks ran without an exception
+     */
+    public static long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return how many tasks threw an exception
+     */
+    public static long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return how many flushes were dropped because the queue was full
+     */
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return how many tasks are waiting to run
+     */
+    public static int getQueueDepth() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    private static final class Task implements Runnable {
+        private final Runnable task;
+        final boolean droppable;
+
+        Task(Runnable task, boolean droppable) {
+            this.task = task;
+            this.droppable = droppable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+                completed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                CloudCityLogger.e(TAG, e.toString(), e);
+            }
+        }
+    }
+
+    @NonNull
+    public static String describe() {
+        return "InfluxIoExecutor{" +
+                "submitted=" + submitted.get() +
+                ", completed=" + completed.get() +
+                ", failed=" + failed.get() +
+                ", dropped=" + dropped.get() +
+                ", queued=" + EXECUTOR.getQueue().size() +
+                ", active=" + EXECUTOR.getActiveCount() +
+                '}';
+    }
+}
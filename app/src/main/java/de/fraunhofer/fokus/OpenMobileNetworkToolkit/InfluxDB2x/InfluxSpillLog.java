@@ -0,0 +1,293 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import androidx.annotation.NonNull;
+
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Append-only log on disk for points the Influx write API can't take right now, e.g. while the
+ * server is unreachable, so they don't pile up on the heap.
+ * <p>
+ * Points are stored as line protocol, each line prefixed with its precision, in segment files of
+ * about {@code segmentBytes} each. {@link #replay(int, BiConsumer)} hands them back oldest first and
+ * deletes every segment once it's fully replayed. If the process dies during replay, the segment
+ * being replayed is replayed again from its start on the next run; Influx overwrites a point with
+ * the same series and timestamp, so that doesn't duplicate anything.
+ * <p>
+ * The log never grows past {@code maxBytes}; once it would, the oldest segment is dropped.
+ * <p>
+ * Thread safe.
+ */
+public class InfluxSpillLog implements Closeable {
+    private static final String TAG = "InfluxSpillLog";
+    private static final String SUFFIX = ".lp";
+
+    private final File dir;
+    private final long segmentBytes;
+    private final long maxBytes;
+
+    // closed segments, oldest first; only these are replayed
+    private final ArrayDeque<File> segments = new ArrayDeque<>();
+    private long closedBytes = 0;
+    // how far the oldest segment was replayed already
+    private long readOffset = 0;
+    private long nextSegmentId = 1;
+
+    private File writeSegment;
+    private LineProtocolWriter writer;
+
+    private long spilled = 0;
+    private long replayed = 0;
+    private long droppedSegments = 0;
+
+    /**
+     * Open the log, picking up the segments a previous run left behind
+     *
+     * @param dir          the directory holding the segments, created if needed
+     * @param segmentBytes start a new segment once the current one has this many bytes
+     * @param maxBytes     the most bytes all segments together may take
+     * @throws IOException if the directory can't be created
+     */
+    public InfluxSpillLog(@NonNull File dir, long segmentBytes, long maxBytes) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+
+        File[] files = dir.listFiles((parent, name) -> name.endsWith(SUFFIX) && segmentId(name) > 0);
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(segmentId(a.getName()), segmentId(b.getName())));
+            for (File file : files) {
+                segments.addLast(file);
+                closedBytes += file.length();
+                nextSegmentId = segmentId(file.getName()) + 1;
+            }
+        }
+        if (!segments.isEmpty()) {
+            CloudCityLogger.d(TAG, "opened " + dir + " with " + segments.size() + " segments, " + closedBytes + " bytes to replay");
+        }
+    }
+
+    private static long segmentId(String name) {
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Append points. A point without a timestamp gets the current time, as it would have gotten
+     * from the server when written right away.
+     *
+     * @param points the points to append
+     * @throws IOException if writing the segment failed
+     */
+    public synchronized void append(@NonNull List<Point> points) throws IOException {
+        LineProtocolWriter out = writer();
+        for (Point point : points) {
+            String line = point.toLineProtocol();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (point.getTime() == null) {
+                out.writeLine(WritePrecision.MS.getValue() + ' ' + line + ' ' + System.currentTimeMillis());
+            } else {
+                out.writeLine(point.getPrecision().getValue() + ' ' + line);
+            }
+            spilled++;
+        }
+        finishAppend();
+    }
+
+    /**
+     * Append records which are already line protocol
+     *
+     * @param precision the precision of the records' timestamps
+     * @param records   the records to append
+     * @throws IOException if writing the segment failed
+     */
+    public synchronized void appendRecords(@NonNull WritePrecision precision, @NonNull List<String> records) throws IOException {
+        LineProtocolWriter out = writer();
+        for (String record : records) {
+            if (record.isEmpty()) {
+                continue;
+            }
+            out.writeLine(precision.getValue() + ' ' + record);
+            spilled++;
+        }
+        finishAppend();
+    }
+
+    private LineProtocolWriter writer() throws IOException {
+        if (writer == null) {
+            writeSegment = new File(dir, String.format("%019d", nextSegmentId++) + SUFFIX);
+            writer = new LineProtocolWriter(new FileOutputStream(writeSegment), 16 * 1024);
+        }
+        return writer;
+    }
+
+    private void finishAppend() throws IOException {
+        // written out on every append, so a crash loses at most what's being appended
+        writer.flush();
+        if (writer.getBytesWritten() >= segmentBytes) {
+            closeWriteSegment();
+        }
+    }
+
+    private void closeWriteSegment() throws IOException {
+        writer.close();
+        writer = null;
+        segments.addLast(writeSegment);
+        closedBytes += writeSegment.length();
+        writeSegment = null;
+        while (closedBytes > maxBytes && segments.size() > 1) {
+            File oldest = segments.removeFirst();
+            closedBytes -= oldest.length();
+            readOffset = 0;
+            droppedSegments++;
+            CloudCityLogger.w(TAG, "spill log is full, dropped " + oldest.getName());
+            if (!oldest.delete()) {
+                CloudCityLogger.w(TAG, "couldn't delete " + oldest);
+            }
+        }
+    }
+
+    /**
+     * @return true if nothing is waiting to be replayed
+     */
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty() && (writer == null || writer.getBytesWritten() == 0);
+    }
+
+    /**
+     * Hand the oldest lines to the consumer, in order, as batches of lines with the same precision.
+     * Lines only count as replayed once the consumer returned, so if it throws, they're handed out
+     * again by the next call.
+     *
+     * @param maxLines the most lines to hand out
+     * @param consumer gets the precision and line protocol of every batch
+     * @return how many lines were handed out
+     * @throws IOException if reading a segment failed
+     */
+    public synchronized int replay(int maxLines, @NonNull BiConsumer<WritePrecision, List<String>> consumer) throws IOException {
+        if (segments.isEmpty() && writer != null && writer.getBytesWritten() > 0) {
+            // the segment being written is only replayed once it's closed
+            closeWriteSegment();
+        }
+        int lines = 0;
+        while (lines < maxLines && !segments.isEmpty()) {
+            File segment = segments.peekFirst();
+            LineFileReader reader = new LineFileReader(segment, readOffset, false);
+            try {
+                WritePrecision precision = null;
+                List<String> batch = new ArrayList<>();
+                String line;
+                while (lines + batch.size() < maxLines && (line = reader.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    WritePrecision linePrecision = space > 0 ? WritePrecision.fromValue(line.substring(0, space)) : null;
+                    if (linePrecision == null) {
+                        CloudCityLogger.w(TAG, "skipping a line without precision in " + segment.getName());
+                        continue;
+                    }
+                    if (precision != null && linePrecision != precision) {
+                        lines += deliver(consumer, precision, batch, reader.getLineStart());
+                        batch = new ArrayList<>();
+                    }
+                    precision = linePrecision;
+                    batch.add(line.substring(space + 1));
+                }
+                if (!batch.isEmpty()) {
+                    lines += deliver(consumer, precision, batch, reader.getOffset());
+                } else {
+                    readOffset = reader.getOffset();
+                }
+                if (!reader.isAtEnd()) {
+                    break;
+                }
+            } finally {
+                reader.close();
+            }
+            // fully replayed; a torn last line, from a crash while appending, is dropped with it
+            segments.removeFirst();
+            closedBytes -= segment.length();
+            readOffset = 0;
+            if (!segment.delete()) {
+                CloudCityLogger.w(TAG, "couldn't delete " + segment);
+            }
+        }
+        return lines;
+    }
+
+    private int deliver(BiConsumer<WritePrecision, List<String>> consumer, WritePrecision precision, List<String> batch, long endOffset) {
+        consumer.accept(precision, batch);
+        readOffset = endOffset;
+        replayed += batch.size();
+        return batch.size();
+    }
+
+    /**
+     * @return how many lines were appended
+     */
+    public synchronized long getSpilled() {
+        return spilled;
+    }
+
+    /**
+     * @return how many lines were replayed
+     */
+    public synchronized long getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * @return how many segments were dropped because the log was full
+     */
+    public synchronized long getDroppedSegments() {
+        return droppedSegments;
+    }
+
+    /**
+     * @return how many bytes are waiting to be replayed, roughly
+     */
+    public synchronized long getPendingBytes() {
+        return closedBytes - readOffset + (writer != null ? writer.getBytesWritten() : 0);
+    }
+
+    /**
+     * Close the segment being written; it's replayed after the next open
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            closeWriteSegment();
+        }
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "InfluxSpillLog{" +
+                "segments=" + segments.size() +
+                ", pendingBytes=" + getPendingBytes() +
+                ", spilled=" + spilled +
+                ", replayed=" + replayed +
+                ", droppedSegments=" + droppedSegments +
+                '}';
+    }
+}
@@ -12,6 +12,9 @@ import android.content.Context;
 import android.graphics.Color;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.InfluxDBClientFactory;
@@ -25,8 +28,11 @@ import com.influxdb.client.write.events.WriteErrorEvent;
 import com.influxdb.client.write.events.WriteRetriableErrorEvent;
 import com.influxdb.client.write.events.WriteSuccessEvent;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 import cloudcity.util.CloudCityLogger;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.GlobalVars;
@@ -37,11 +43,27 @@ import io.reactivex.rxjava3.core.BackpressureOverflowStrategy;
 
 public class InfluxdbConnection {
     private final static String TAG = "InfluxDBConnection";
+    private static final long DISCONNECT_TIMEOUT_MS = 5000;
+    // past this many unconfirmed points, new ones are spilled to disk instead of held on the heap
+    private static final long SPILL_THRESHOLD = 10_000;
+    private static final int REPLAY_LINES_PER_FLUSH = 5_000;
+    private static final long SPILL_SEGMENT_BYTES = 1024 * 1024;
+    private static final long SPILL_MAX_BYTES = 64L * 1024 * 1024;
     private final SharedPreferencesGrouper spg;
     private final String url;
-    private InfluxDBClient influxDBClient;
-    private WriteApi writeApi;
+    // written on the caller's thread, read on the Influx I/O thread
+    private volatile InfluxDBClient influxDBClient;
+    private volatile WriteApi writeApi;
     private final GlobalVars gv;
+    private final InfluxHealthMonitor health;
+    // null if the spill directory couldn't be created; points are then dropped while unreachable
+    private final InfluxSpillLog spill;
+    // points handed to the write API which it didn't report as written yet
+    private final AtomicLong unconfirmed = new AtomicLong(0);
+    // points handed to writePoints, and how many of them are settled, see getSettledPoints()
+    private final Object settleLock = new Object();
+    private long handedOff = 0;
+    private volatile long settled = 0;
 
     public InfluxdbConnection(String URL, String token, String org, String bucket,
                               Context context) {
@@ -51,10 +73,23 @@ public class InfluxdbConnection {
         influxDBClient = InfluxDBClientFactory.create(this.url, token1, org, bucket);
         influxDBClient.enableGzip();
         spg = SharedPreferencesGrouper.getInstance(context);
+        health = new InfluxHealthMonitor(url, () -> {
+            InfluxDBClient client = influxDBClient;
+            return client != null && client.ping();
+        });
+        InfluxSpillLog spillLog = null;
+        try {
+            File dir = new File(context.getFilesDir(), "influx_spill/" + url.replaceAll("[^A-Za-z0-9._-]", "_"));
+            spillLog = new InfluxSpillLog(dir, SPILL_SEGMENT_BYTES, SPILL_MAX_BYTES);
+        } catch (IOException e) {
+            CloudCityLogger.e(TAG, "Can't open the spill log, points are dropped while InfluxDB is unreachable", e);
+        }
+        spill = spillLog;
     }
 
     /**
-     * Open the write API on the InfluxConnection
+     * Open the write API on the InfluxConnection, and start checking in the background whether the
+     * server is reachable
      */
     public void open_write_api() {
         if (writeApi != null) return;
@@ -64,22 +99,32 @@ public class InfluxdbConnection {
                 .batchSize(1000)
                 .flushInterval(1000)
                 .backpressureStrategy(BackpressureOverflowStrategy.DROP_OLDEST)
-                .bufferLimit(100000)
+                // points past SPILL_THRESHOLD go to disk, this only has to cover the ones in flight
+                .bufferLimit((int) (2 * SPILL_THRESHOLD))
                 .jitterInterval(10)
                 .retryInterval(500)
                 .exponentialBase(4)
                 .build());
+            health.start();
             writeApi.listenEvents(BackpressureEvent.class, value -> {
                 CloudCityLogger.d(TAG, "Backpressure: Reason: " + value.getReason());
                 value.logEvent();
             });
             writeApi.listenEvents(WriteSuccessEvent.class, value -> {
+                health.reportReachable();
+                long written = countLines(value.getLineProtocol());
+                unconfirmed.updateAndGet(count -> Math.max(0, count - written));
+                settleIfConfirmed();
                 if ( spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_influx", false)) {
                     gv.getLog_status().setColorFilter(Color.argb(255, 0, 255, 0));
                 }
             });
             writeApi.listenEvents(WriteErrorEvent.class, value -> {
                 value.logEvent();
+                health.requestCheck();
+                // the write API gave up on a batch without saying how big it was; start counting over
+                // rather than spill for good
+                unconfirmed.set(0);
                 if ( spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_influx", false)) {
                     gv.getLog_status().setColorFilter(Color.argb(255, 255, 0, 0));
                 }
@@ -87,6 +132,7 @@ public class InfluxdbConnection {
 
             writeApi.listenEvents(WriteRetriableErrorEvent.class, value -> {
                 value.logEvent();
+                health.requestCheck();
                 if ( spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_influx", false)) {
                     gv.getLog_status().setColorFilter(Color.argb(255, 255, 0, 0));
                 }
@@ -104,7 +150,20 @@ public class InfluxdbConnection {
         // make sure we a instance of the client. This can happen on an app resume
         if (influxDBClient != null) {
             CloudCityLogger.d(TAG, "disconnect: Flushing Influx write API if possible");
-            flush();
+            flush(false);
+            // the writes and the flush have to reach the write API before it's closed
+            InfluxIoExecutor.awaitSubmitted(DISCONNECT_TIMEOUT_MS);
+            health.stop();
+            if (spill != null) {
+                try {
+                    // what's left is replayed the next time the write API is opened
+                    spill.close();
+                    CloudCityLogger.d(TAG, "disconnect: " + spill);
+                } catch (IOException e) {
+                    CloudCityLogger.e(TAG, "disconnect: Error while closing the spill log", e);
+                }
+            }
+            unconfirmed.set(0);
             try {
                 CloudCityLogger.d(TAG, "disconnect: Closing Influx write API");
                 writeApi.close();
@@ -130,9 +189,10 @@ public class InfluxdbConnection {
      * Add a point to the message queue
      */
     public boolean writePoint(Point point) {
-        if (influxDBClient != null && influxDBClient.ping()) {
+        WriteApi api = writeApi;
+        if (api != null && health.isReachable()) {
             try {
-                writeApi.writePoint(point);
+                api.writePoint(point);
             } catch (com.influxdb.exceptions.InfluxException e) {
                 CloudCityLogger.e(TAG, "writePoint: Error while writing points to influx DB", e);
                 CloudCityLogger.e(TAG,e.toString());
@@ -146,59 +206,157 @@ public class InfluxdbConnection {
     }
 
     /**
-     * Write string records to the queue
+     * Write string records to the queue, on the {@link InfluxIoExecutor} thread, or to the
+     * {@link InfluxSpillLog}, same as {@link #writePoints(List)}
      * @param points String list of records
      * @return not yet useful
      * @throws IOException if record cant be written
      */
     public boolean writeRecords(List<String> points) throws IOException {
-        new Thread(() -> {
-            try {
-                if (influxDBClient != null && influxDBClient.ping()) {
-                    try {
-                        writeApi.writeRecords(WritePrecision.MS, points);
-                    } catch (com.influxdb.exceptions.InfluxException e) {
-                        CloudCityLogger.e(TAG, "writeRecords: Error while writing points to influx DB", e);
-                        CloudCityLogger.e(TAG,e.toString(), e);
-                    }
-                } else {
-                    CloudCityLogger.d(TAG, "writeRecords: InfluxDB not reachable: " + url);
+        // taken now, as disconnect() may clear it before the task runs
+        WriteApi api = writeApi;
+        InfluxIoExecutor.execute(() -> {
+            if (shouldSpill(api)) {
+                try {
+                    spill.appendRecords(WritePrecision.MS, points);
+                } catch (IOException e) {
+                    CloudCityLogger.e(TAG, "writeRecords: Error while spilling points to disk", e);
                 }
+            } else if (api != null && health.isReachable()) {
+                // counted before handing them over, so a quick success event can't be counted first
+                unconfirmed.addAndGet(points.size());
+                try {
+                    api.writeRecords(WritePrecision.MS, points);
+                } catch (com.influxdb.exceptions.InfluxException e) {
+                    unconfirmed.addAndGet(-points.size());
+                    CloudCityLogger.e(TAG, "writeRecords: Error while writing points to influx DB", e);
+                    CloudCityLogger.e(TAG,e.toString(), e);
+                }
+            } else {
+                CloudCityLogger.d(TAG, "writeRecords: InfluxDB not reachable: " + url);
             }
-            catch (Exception e) {
-                CloudCityLogger.e(TAG,e.toString(), e);
-            }
-        }).start();
+        });
         return true;
     }
 
     /**
+     * Write records and wait until the server accepted them, past the batching write API, for
+     * uploads which have to know their data arrived. Blocks the caller.
+     *
+     * @param records line protocol records with millisecond timestamps
+     * @throws com.influxdb.exceptions.InfluxException if the server didn't accept them
+     */
+    public void writeRecordsAndWait(@NonNull List<String> records) {
+        InfluxDBClient client = influxDBClient;
+        if (client == null) {
+            throw new IllegalStateException("writeRecordsAndWait: InfluxDB client is disconnected");
+        }
+        client.getWriteApiBlocking().writeRecords(WritePrecision.MS, records);
+        health.reportReachable();
+    }
+
+    /**
+     * Write points to the queue, on the {@link InfluxIoExecutor} thread, or to the {@link InfluxSpillLog}
+     * while they can't go to the write API; they're replayed by {@link #flush()} once they can
      *
      * @param points influx points to write
      * @return true if no exception happen
      * @throws IOException if points cant be written
      */
     public boolean writePoints(List<Point> points) throws IOException {
-        new Thread(() -> {
-            try {
-                if (influxDBClient != null && influxDBClient.ping()) {
-                    try {
-                        writeApi.writePoints(points);
-                    } catch (com.influxdb.exceptions.InfluxException e) {
-                        CloudCityLogger.e(TAG, "writePoint: Error while writing points to influx DB", e);
-                        CloudCityLogger.e(TAG,e.toString(), e);
-                    }
-                } else {
-                    CloudCityLogger.d(TAG, "writePoints: InfluxDB not reachable: " + url);
+        return writePoints(points, null);
+    }
+
+    /**
+     * Same as {@link #writePoints(List)}, and tell when the points are settled
+     *
+     * @param points      influx points to write
+     * @param onHandedOff called on the {@link InfluxIoExecutor} thread once the points went to the write
+     *                    API or the spill log, with the value {@link #getSettledPoints()} reaches once
+     *                    they're settled
+     * @return true if no exception happen
+     * @throws IOException if points cant be written
+     */
+    public boolean writePoints(List<Point> points, @Nullable LongConsumer onHandedOff) throws IOException {
+        // taken now, as disconnect() may clear it before the task runs
+        WriteApi api = writeApi;
+        InfluxIoExecutor.execute(() -> {
+            long settledAt;
+            if (points.isEmpty()) {
+                synchronized (settleLock) {
+                    settledAt = handedOff;
+                }
+            } else if (shouldSpill(api)) {
+                try {
+                    spill.append(points);
+                } catch (IOException e) {
+                    CloudCityLogger.e(TAG, "writePoints: Error while spilling points to disk", e);
                 }
+                settledAt = handOff(points.size(), false);
+            } else if (api != null && health.isReachable()) {
+                // counted before handing them over, so a quick success event can't be counted first
+                settledAt = handOff(points.size(), true);
+                try {
+                    api.writePoints(points);
+                } catch (com.influxdb.exceptions.InfluxException e) {
+                    unconfirmed.addAndGet(-points.size());
+                    settleIfConfirmed();
+                    CloudCityLogger.e(TAG, "writePoint: Error while writing points to influx DB", e);
+                    CloudCityLogger.e(TAG,e.toString(), e);
+                }
+            } else {
+                CloudCityLogger.d(TAG, "writePoints: InfluxDB not reachable: " + url);
+                settledAt = handOff(points.size(), false);
             }
-            catch (Exception e) {
-                CloudCityLogger.e(TAG,e.toString(), e);
+            if (onHandedOff != null) {
+                onHandedOff.accept(settledAt);
             }
-        }).start();
+        });
         return true;
     }
 
+    /**
+     * Count points given to {@link #writePoints(List, LongConsumer)}
+     *
+     * @param toWriteApi whether they go to the write API, and are only settled once it confirms them
+     * @return the value of {@link #getSettledPoints()} which covers them
+     */
+    private long handOff(int points, boolean toWriteApi) {
+        long settledAt;
+        synchronized (settleLock) {
+            if (toWriteApi) {
+                unconfirmed.addAndGet(points);
+            }
+            handedOff += points;
+            settledAt = handedOff;
+        }
+        settleIfConfirmed();
+        return settledAt;
+    }
+
+    private void settleIfConfirmed() {
+        synchronized (settleLock) {
+            if (unconfirmed.get() == 0) {
+                settled = handedOff;
+            }
+        }
+    }
+
+    /**
+     * How many of the points given to {@link #writePoints(List, LongConsumer)} are settled: confirmed
+     * by a write success event, in the spill log on disk, or dropped because neither was possible.
+     * <p>
+     * The write API confirms batches without saying which points they held, so this only moves forward
+     * whenever it has nothing unconfirmed left, e.g. after every flush while the server keeps up. After an
+     * error event the write API's count starts over, so the points it gave up on are settled along with
+     * the next ones.
+     *
+     * @return the number of settled points, counted in the order they were given
+     */
+    public long getSettledPoints() {
+        return settled;
+    }
+
     /**
      * Onboard a influxDB and store credentials
      * @return if onboarding was successful or not
@@ -225,28 +383,106 @@ public class InfluxdbConnection {
     }
 
     /**
-     * If we can reach the influxDB call flush on the write API
+     * If we can reach the influxDB call flush on the write API, on the {@link InfluxIoExecutor} thread,
+     * after handing it some of the spilled points
      * @return true if flush was successful
      */
     public boolean flush() {
-        new Thread(() -> {
-            try {
-                if (influxDBClient.ping()) {
-                    writeApi.flush();
-                }
-            } catch (Exception e) {
-                CloudCityLogger.e(TAG,e.toString(), e);
+        // a later flush does the same, so this one may be dropped while Influx falls behind
+        return flush(true);
+    }
+
+    private boolean flush(boolean droppable) {
+        WriteApi api = writeApi;
+        if (api == null) {
+            return false;
+        }
+        Runnable task = () -> {
+            if (health.isReachable()) {
+                replaySpilled(api);
+                api.flush();
             }
-        }).start();
+        };
+        if (droppable) {
+            InfluxIoExecutor.executeDroppable(task);
+        } else {
+            InfluxIoExecutor.execute(task);
+        }
         return true;
     }
 
+    /**
+     * Whether points have to go to the spill log instead of the write API: while the server is
+     * unreachable or the write API isn't open, while the write API holds too many unconfirmed points,
+     * and while there are spilled points left, so points reach Influx in the order they were taken.
+     * Only called on the {@link InfluxIoExecutor} thread.
+     *
+     * @param api the write API the points would go to, null if it isn't open
+     */
+    private boolean shouldSpill(@Nullable WriteApi api) {
+        return spill != null
+                && (api == null || !health.isReachable() || unconfirmed.get() >= SPILL_THRESHOLD || !spill.isEmpty());
+    }
+
+    /**
+     * Hand spilled points back to the write API, as many as fit under the threshold.
+     * Only called on the {@link InfluxIoExecutor} thread.
+     */
+    private void replaySpilled(WriteApi api) {
+        if (spill == null || spill.isEmpty()) {
+            return;
+        }
+        long room = Math.min(SPILL_THRESHOLD - unconfirmed.get(), REPLAY_LINES_PER_FLUSH);
+        if (room <= 0) {
+            return;
+        }
+        try {
+            int replayed = spill.replay((int) room, (precision, lines) -> {
+                unconfirmed.addAndGet(lines.size());
+                try {
+                    api.writeRecords(precision, lines);
+                } catch (com.influxdb.exceptions.InfluxException e) {
+                    unconfirmed.addAndGet(-lines.size());
+                    throw e;
+                }
+            });
+            CloudCityLogger.d(TAG, "replayed " + replayed + " spilled points, " + spill);
+        } catch (IOException | com.influxdb.exceptions.InfluxException e) {
+            CloudCityLogger.e(TAG, "replaySpilled: Error while replaying spilled points", e);
+        }
+    }
+
+    private static long countLines(String lineProtocol) {
+        if (lineProtocol == null || lineProtocol.isEmpty()) {
+            return 0;
+        }
+        long lines = 1;
+        for (int i = 0; i < lineProtocol.length(); i++) {
+            if (lineProtocol.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
     public WriteApi getWriteApi() {
         return writeApi;
     }
 
+    /**
+     * Ping the server now, blocking; writes use {@link #isReachable()} instead
+     *
+     * @return true if the server answered
+     */
     public boolean ping() {
         return influxDBClient.ping();
     }
+
+    /**
+     * @return whether the server answered the last background ping; cheap, doesn't ping
+     */
+    public boolean isReachable() {
+        return health.isReachable();
+    }
 }
 
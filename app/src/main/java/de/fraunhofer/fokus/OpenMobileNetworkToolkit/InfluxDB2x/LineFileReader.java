@@ -0,0 +1,119 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads UTF-8 lines from a file, starting at a byte offset, and keeps track of the byte offset of
+ * every line, so reading can later resume right after the last line that was handled.
+ */
+public class LineFileReader implements Closeable {
+    private final FileInputStream in;
+    private final boolean unterminatedLastLine;
+    private final byte[] buffer = new byte[16 * 1024];
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+    private int position = 0;
+    private int limit = 0;
+    private boolean atEnd = false;
+    private long lineStart;
+    private long offset;
+
+    /**
+     * @param file                 the file to read
+     * @param offset               the byte offset to start at, the start of a line
+     * @param unterminatedLastLine whether a last line without a newline is returned as well; if not,
+     *                             it's treated as torn and skipped
+     * @throws IOException if the file can't be opened
+     */
+    public LineFileReader(@NonNull File file, long offset, boolean unterminatedLastLine) throws IOException {
+        in = new FileInputStream(file);
+        in.getChannel().position(offset);
+        this.unterminatedLastLine = unterminatedLastLine;
+        this.offset = offset;
+        this.lineStart = offset;
+    }
+
+    /**
+     * @return the next line without its newline, or null at the end of the file
+     * @throws IOException if reading failed
+     */
+    @Nullable
+    public String readLine() throws IOException {
+        if (atEnd) {
+            return null;
+        }
+        line.reset();
+        long start = offset;
+        int consumed = 0;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    atEnd = true;
+                    if (unterminatedLastLine && consumed > 0) {
+                        return lineRead(start, consumed);
+                    }
+                    return null;
+                }
+            }
+            int newline = -1;
+            for (int i = position; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline < 0) {
+                line.write(buffer, position, limit - position);
+                consumed += limit - position;
+                position = limit;
+                continue;
+            }
+            line.write(buffer, position, newline - position);
+            consumed += newline - position + 1;
+            position = newline + 1;
+            return lineRead(start, consumed);
+        }
+    }
+
+    private String lineRead(long start, int consumed) {
+        lineStart = start;
+        offset = start + consumed;
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the byte offset of the start of the line read last
+     */
+    public long getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return the byte offset right after the line read last, where reading would resume
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return true once {@link #readLine()} reached the end of the file
+     */
+    public boolean isAtEnd() {
+        return atEnd;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,241 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses single lines of influx line protocol, as written by {@link Point#toLineProtocol()}, back into
+ * their measurement, tags, fields and timestamp.
+ * <p>
+ * Turning a parsed line back into a {@link Point} with {@link Line#toPoint()} gives the same line
+ * protocol again, so the parsed form can be used to store points in other formats.
+ */
+public final class LineProtocolParser {
+
+    public enum FieldType {
+        FLOAT,
+        INTEGER,
+        BOOLEAN,
+        STRING
+    }
+
+    /**
+     * One parsed line; tags and fields keep the order of the line, which is sorted by key for lines
+     * written by {@link Point}
+     */
+    public static final class Line {
+        public final String measurement;
+        public final List<String> tagKeys = new ArrayList<>();
+        public final List<String> tagValues = new ArrayList<>();
+        public final List<String> fieldKeys = new ArrayList<>();
+        public final List<FieldType> fieldTypes = new ArrayList<>();
+        /**
+         * {@link Double} for {@link FieldType#FLOAT}, {@link Long} for {@link FieldType#INTEGER},
+         * {@link Boolean} for {@link FieldType#BOOLEAN} and {@link String} for {@link FieldType#STRING}
+         */
+        public final List<Object> fieldValues = new ArrayList<>();
+        public @Nullable Long time;
+
+        public Line(@NonNull String measurement) {
+            this.measurement = measurement;
+        }
+
+        /**
+         * @return a point which {@link Point#toLineProtocol()} gives this line again
+         */
+        public @NonNull Point toPoint() {
+            Point point = Point.measurement(measurement);
+            for (int i = 0; i < tagKeys.size(); i++) {
+                point.addTag(tagKeys.get(i), tagValues.get(i));
+            }
+            for (int i = 0; i < fieldKeys.size(); i++) {
+                String key = fieldKeys.get(i);
+                Object value = fieldValues.get(i);
+                switch (fieldTypes.get(i)) {
+                    case FLOAT:
+                        point.addField(key, (double) (Double) value);
+                        break;
+                    case INTEGER:
+                        point.addField(key, (long) (Long) value);
+                        break;
+                    case BOOLEAN:
+                        point.addField(key, (boolean) (Boolean) value);
+                        break;
+                    case STRING:
+                        point.addField(key, (String) value);
+                        break;
+                }
+            }
+            if (time != null) {
+                // the precision isn't part of the line, and doesn't change how the time is written
+                point.time(time, WritePrecision.MS);
+            }
+            return point;
+        }
+    }
+
+    private final CharSequence text;
+    private final int length;
+    private final StringBuilder sb = new StringBuilder();
+    private int pos = 0;
+
+    private LineProtocolParser(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Parse one line of line protocol, without the trailing newline
+     *
+     * @param line the line to parse
+     * @return the parsed line
+     * @throws IllegalArgumentException if the line isn't valid line protocol
+     */
+    public static @NonNull Line parse(@NonNull CharSequence line) {
+        return new LineProtocolParser(line).parseLine();
+    }
+
+    private Line parseLine() {
+        Line line = new Line(readKey(',', ' '));
+        if (line.measurement.isEmpty()) {
+            throw error("missing measurement");
+        }
+        while (pos < length && text.charAt(pos) == ',') {
+            pos++;
+            line.tagKeys.add(readKey('=', '='));
+            expect('=');
+            line.tagValues.add(readKey(',', ' '));
+        }
+        expect(' ');
+        while (true) {
+            line.fieldKeys.add(readKey('=', '='));
+            expect('=');
+            readFieldValue(line);
+            if (pos < length && text.charAt(pos) == ',') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (pos < length) {
+            expect(' ');
+            try {
+                line.time = Long.parseLong(text.subSequence(pos, length).toString());
+            } catch (NumberFormatException e) {
+                throw error("invalid timestamp");
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Read an escaped measurement, tag key, tag value or field key up to one of the stop chars
+     */
+    private String readKey(char stop1, char stop2) {
+        sb.setLength(0);
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '\\' && pos + 1 < length) {
+                char next = text.charAt(pos + 1);
+                switch (next) {
+                    case 'n':
+                        sb.append('\n');
+                        pos += 2;
+                        continue;
+                    case 'r':
+                        sb.append('\r');
+                        pos += 2;
+                        continue;
+                    case 't':
+                        sb.append('\t');
+                        pos += 2;
+                        continue;
+                    case ' ':
+                    case ',':
+                    case '=':
+                        sb.append(next);
+                        pos += 2;
+                        continue;
+                    default:
+                        // a backslash on its own isn't escaped
+                        sb.append(c);
+                        pos++;
+                        continue;
+                }
+            }
+            if (c == stop1 || c == stop2) {
+                break;
+            }
+            sb.append(c);
+            pos++;
+        }
+        return sb.toString();
+    }
+
+    private void readFieldValue(Line line) {
+        if (pos < length && text.charAt(pos) == '"') {
+            pos++;
+            sb.setLength(0);
+            while (true) {
+                if (pos >= length) {
+                    throw error("unterminated string field");
+                }
+                char c = text.charAt(pos);
+                if (c == '\\' && pos + 1 < length && (text.charAt(pos + 1) == '"' || text.charAt(pos + 1) == '\\')) {
+                    sb.append(text.charAt(pos + 1));
+                    pos += 2;
+                } else if (c == '"') {
+                    pos++;
+                    break;
+                } else {
+                    sb.append(c);
+                    pos++;
+                }
+            }
+            line.fieldTypes.add(FieldType.STRING);
+            line.fieldValues.add(sb.toString());
+            return;
+        }
+
+        int start = pos;
+        while (pos < length && text.charAt(pos) != ',' && text.charAt(pos) != ' ') {
+            pos++;
+        }
+        String token = text.subSequence(start, pos).toString();
+        if (token.isEmpty()) {
+            throw error("missing field value");
+        }
+        try {
+            char last = token.charAt(token.length() - 1);
+            if (last == 'i' || last == 'u') {
+                line.fieldTypes.add(FieldType.INTEGER);
+                line.fieldValues.add(Long.parseLong(token.substring(0, token.length() - 1)));
+            } else if (token.equals("true") || token.equals("false")) {
+                line.fieldTypes.add(FieldType.BOOLEAN);
+                line.fieldValues.add(Boolean.parseBoolean(token));
+            } else {
+                line.fieldTypes.add(FieldType.FLOAT);
+                line.fieldValues.add(Double.parseDouble(token));
+            }
+        } catch (NumberFormatException e) {
+            throw error("invalid field value " + token);
+        }
+    }
+
+    private void expect(char c) {
+        if (pos >= length || text.charAt(pos) != c) {
+            throw error("expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + pos + " in: " + text);
+    }
+}
@@ -0,0 +1,144 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import androidx.annotation.NonNull;
+
+import com.influxdb.client.write.Point;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes {@link Point}s as influx line protocol, one point per line, to an {@link OutputStream}.
+ * <p>
+ * The output is byte-identical to writing {@code (point.toLineProtocol() + "\n").getBytes()} for every
+ * point, but the line is UTF-8 encoded straight into a reusable buffer instead of going through a
+ * concatenated String and a new byte[] per point, and the stream is only written to when the buffer is full
+ * or on {@link #flush()}.
+ * <p>
+ * Not thread safe, every writing thread needs its own instance.
+ */
+public class LineProtocolWriter implements Closeable, Flushable {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // the most bytes one char (or surrogate pair) can take in UTF-8
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position = 0;
+    private long bytesWritten = 0;
+
+    public LineProtocolWriter(@NonNull OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out        the stream to write to, which is closed by {@link #close()}
+     * @param bufferSize size of the internal buffer in bytes
+     */
+    public LineProtocolWriter(@NonNull OutputStream out, int bufferSize) {
+        if (bufferSize < MAX_BYTES_PER_CHAR) {
+            throw new IllegalArgumentException("bufferSize must be at least " + MAX_BYTES_PER_CHAR + ", was " + bufferSize);
+        }
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Write the point as one line of line protocol. A point without fields is written as an empty line,
+     * same as {@link Point#toLineProtocol()} would.
+     *
+     * @param point the point to write
+     * @throws IOException if writing to the underlying stream failed
+     */
+    public void write(@NonNull Point point) throws IOException {
+        writeLine(point.toLineProtocol());
+    }
+
+    /**
+     * Write an already encoded line, followed by a newline
+     *
+     * @param line the line to write, without the trailing newline
+     * @throws IOException if writing to the underlying stream failed
+     */
+    public void writeLine(@NonNull CharSequence line) throws IOException {
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            if (buffer.length - position < MAX_BYTES_PER_CHAR) {
+                flushBuffer();
+            }
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(line.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, String.getBytes() replaces those with '?' as well
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * @return how many bytes were handed to the underlying stream so far, not counting what's still buffered
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return how many bytes are buffered and not yet handed to the underlying stream
+     */
+    public int getBufferedBytes() {
+        return position;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            bytesWritten += position;
+            position = 0;
+        }
+    }
+
+    /**
+     * Write everything buffered to the underlying stream and flush it
+     *
+     * @throws IOException if writing to the underlying stream failed
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flush and close the underlying stream
+     *
+     * @throws IOException if writing to or closing the underlying stream failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
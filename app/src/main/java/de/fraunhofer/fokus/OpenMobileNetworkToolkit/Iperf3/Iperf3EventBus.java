@@ -0,0 +1,153 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Hands the events of an iperf3 run to everyone interested in memory, so the run's JSON stream is
+ * parsed once, by {@link Iperf3Worker} while iperf3 runs, instead of by every consumer re-reading
+ * the logfile.
+ * <p>
+ * Events are the same {@link PropertyChangeEvent}s {@link Iperf3Parser} fires ("start",
+ * "interval", "end" and "error"), so listeners work with either. A subscriber first gets the events
+ * the run already had, then the new ones as they're published, on the publishing thread.
+ * <p>
+ * Every run keeps at most {@link #MAX_EVENTS} events and only the last {@link #MAX_RUNS} runs are
+ * kept; a consumer that needs the whole run and finds events were dropped has to read the logfile,
+ * which iperf3 still writes.
+ */
+public final class Iperf3EventBus {
+    private static final String TAG = "Iperf3EventBus";
+    static final int MAX_EVENTS = 4096;
+    static final int MAX_RUNS = 4;
+
+    private static final Map<String, Run> runs = new LinkedHashMap<>();
+
+    private Iperf3EventBus() {
+    }
+
+    private static final class Run {
+        final ArrayDeque<PropertyChangeEvent> events = new ArrayDeque<>();
+        final List<PropertyChangeListener> listeners = new ArrayList<>();
+        long dropped = 0;
+        boolean published = false;
+        boolean finished = false;
+    }
+
+    private static Run run(String runId) {
+        Run run = runs.get(runId);
+        if (run == null) {
+            run = new Run();
+            runs.put(runId, run);
+            Iterator<Run> oldest = runs.values().iterator();
+            while (runs.size() > MAX_RUNS) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Publish an event of a run to its subscribers
+     *
+     * @param runId the run's id, the iperf3 worker's id
+     * @param event the event, as fired by {@link Iperf3Parser}
+     */
+    public static void publish(@NonNull String runId, @NonNull PropertyChangeEvent event) {
+        List<PropertyChangeListener> listeners;
+        synchronized (Iperf3EventBus.class) {
+            Run run = run(runId);
+            run.published = true;
+            if (run.events.size() == MAX_EVENTS) {
+                run.events.removeFirst();
+                if (run.dropped++ == 0) {
+                    CloudCityLogger.w(TAG, "run " + runId + " has more than " + MAX_EVENTS + " events, dropping the oldest");
+                }
+            }
+            run.events.addLast(event);
+            listeners = new ArrayList<>(run.listeners);
+        }
+        for (PropertyChangeListener listener : listeners) {
+            listener.propertyChange(event);
+        }
+    }
+
+    /**
+     * Mark a run as over; nothing more will be published for it
+     *
+     * @param runId the run's id
+     */
+    public static synchronized void finish(@NonNull String runId) {
+        run(runId).finished = true;
+    }
+
+    /**
+     * Get the run's events so far and then every new one. A run doesn't have to have started yet.
+     * <p>
+     * The events so far are handed out while the bus is locked, possibly on the main thread, and the
+     * new ones on the publishing thread, so the listener should only hand them off to its own thread.
+     *
+     * @param runId    the run's id
+     * @param listener gets the events
+     */
+    public static void subscribe(@NonNull String runId, @NonNull PropertyChangeListener listener) {
+        // holding the lock while replaying, so no event is missed or delivered twice; added first, so
+        // the listener can unsubscribe while it's replayed to
+        synchronized (Iperf3EventBus.class) {
+            Run run = run(runId);
+            run.listeners.add(listener);
+            for (PropertyChangeEvent event : new ArrayList<>(run.events)) {
+                listener.propertyChange(event);
+            }
+        }
+    }
+
+    public static synchronized void unsubscribe(@NonNull String runId, @NonNull PropertyChangeListener listener) {
+        Run run = runs.get(runId);
+        if (run != null) {
+            run.listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Hand every event of a finished run to the listener, if all of them are still here
+     *
+     * @param runId    the run's id
+     * @param listener gets the events
+     * @return false if the run isn't known, not finished or lost events, then nothing was handed out
+     */
+    public static boolean replayFinished(@NonNull String runId, @NonNull PropertyChangeListener listener) {
+        List<PropertyChangeEvent> events;
+        synchronized (Iperf3EventBus.class) {
+            Run run = runs.get(runId);
+            if (run == null || !run.published || !run.finished || run.dropped > 0) {
+                return false;
+            }
+            events = new ArrayList<>(run.events);
+        }
+        for (PropertyChangeEvent event : events) {
+            listener.propertyChange(event);
+        }
+        return true;
+    }
+
+    /**
+     * @return whether events were published for the run and it's over
+     */
+    public static synchronized boolean isFinished(@Nullable String runId) {
+        Run run = runs.get(runId);
+        return run != null && run.published && run.finished;
+    }
+}
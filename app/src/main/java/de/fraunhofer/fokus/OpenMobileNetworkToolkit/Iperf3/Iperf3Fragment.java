@@ -485,11 +485,6 @@ public class Iperf3Fragment extends Fragment {
                 .addTag("iperf3Run")
                 .addTag(iperf3WorkerID)
                 .build();
-        OneTimeWorkRequest iperf3LP =
-            new OneTimeWorkRequest
-                .Builder(Iperf3ToLineProtocolWorker.class)
-                .setInputData(iperf3Data.build())
-                .build();
         OneTimeWorkRequest iperf3UP =
             new OneTimeWorkRequest
                 .Builder(Iperf3UploadWorker.class)
@@ -503,9 +498,7 @@ public class Iperf3Fragment extends Fragment {
 
 
         if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_influx", false) && input.iperf3Json) {
-            iperf3WM.beginWith(iperf3WR).then(iperf3LP).then(iperf3UP).enqueue();
-        } else if(input.iperf3Json) {
-            iperf3WM.beginWith(iperf3WR).then(iperf3LP).enqueue();
+            iperf3WM.beginWith(iperf3WR).then(iperf3UP).enqueue();
         } else {
             iperf3WM.beginWith(iperf3WR).enqueue();
         }
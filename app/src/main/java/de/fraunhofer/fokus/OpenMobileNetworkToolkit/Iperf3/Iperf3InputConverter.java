@@ -15,13 +15,16 @@ import com.google.gson.Gson;
 
 @ProvidedTypeConverter
 public class Iperf3InputConverter {
+    // Gson is thread safe and caches the adapters it builds, so one instance serves every row
+    private static final Gson GSON = new Gson();
+
     @TypeConverter
     public Iperf3Fragment.Iperf3Input StringToIperf3Input(String string) {
-        return new Gson().fromJson(string, Iperf3Fragment.Iperf3Input.class);
+        return GSON.fromJson(string, Iperf3Fragment.Iperf3Input.class);
     }
 
     @TypeConverter
     public String Iperf3InputToString(Iperf3Fragment.Iperf3Input example) {
-        return new Gson().toJson(example);
+        return GSON.toJson(example);
     }
 }
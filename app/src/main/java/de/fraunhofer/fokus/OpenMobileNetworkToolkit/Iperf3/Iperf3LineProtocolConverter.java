@@ -0,0 +1,257 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.work.Data;
+
+import com.google.common.base.Splitter;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.DeviceInformation;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.GlobalVars;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolWriter;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Interval;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.Stream;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.TCP.TCP_UL_STREAM;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.UDP.UDP_DL_STREAM;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.start.Start;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SPType;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SharedPreferencesGrouper;
+
+/**
+ * Turns the events of an iperf3 run into line protocol as they arrive, one point per stream of every
+ * interval.
+ * <p>
+ * It's a listener for {@link Iperf3Parser} and {@link Iperf3EventBus} events, so {@link Iperf3Worker}
+ * writes the points while the test runs and {@link Iperf3ToLineProtocolWorker} can still convert a
+ * finished run. The run's settings are read from the same worker input data both get.
+ * <p>
+ * The first write error stops the conversion; it's kept for {@link #getError()} and every later
+ * event is ignored.
+ */
+public class Iperf3LineProtocolConverter implements PropertyChangeListener {
+    private static final String TAG = "Iperf3LineProtocolConverter";
+
+    private final LineProtocolWriter writer;
+    private final SharedPreferencesGrouper spg;
+    private final DeviceInformation di = GlobalVars.getInstance().get_dp().getDeviceInformation();
+
+    private final String runID;
+    private final String protocol;
+    private final String intervalIperf;
+    private final String bandwidth;
+    private final String duration;
+    private final String bytes;
+    private final boolean rev;
+    private final boolean biDir;
+    private final boolean oneOff;
+
+    // Built once per run, the tags don't change while the points of one test are converted
+    private Map<String, String> tagsMap;
+    private Start start;
+    private TreeMap<String, String> runTags;
+    private long timestamp;
+    private int intervalIdx = 0;
+    private IOException error;
+
+    public Iperf3LineProtocolConverter(@NonNull Context context, @NonNull Data inputData,
+                                       @NonNull LineProtocolWriter writer) {
+        this.writer = writer;
+        spg = SharedPreferencesGrouper.getInstance(context);
+        runID = inputData.getString("iperf3WorkerID");
+        protocol = inputData.getString("protocol");
+
+        String bandwidth = inputData.getString("bandwidth");
+        if (bandwidth == null) {
+            bandwidth = "TCP".equals(protocol) ? "unlimited" : "1000";
+        }
+        this.bandwidth = bandwidth;
+        String duration = inputData.getString("duration");
+        this.duration = duration == null ? "10" : duration;
+        String intervalIperf = inputData.getString("interval");
+        this.intervalIperf = intervalIperf == null ? "1" : intervalIperf;
+        String bytes = inputData.getString("bytes");
+        if (bytes == null) {
+            bytes = "TCP".equals(protocol) ? "8" : "1470";
+        }
+        this.bytes = bytes;
+
+        rev = inputData.getBoolean("rev", false);
+        biDir = inputData.getBoolean("biDir", false);
+        oneOff = inputData.getBoolean("oneOff", false);
+    }
+
+    /**
+     * @return the error that stopped the conversion, or null if every point was written
+     */
+    @Nullable
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if ("start".equals(evt.getPropertyName())) {
+            start = (Start) evt.getNewValue();
+            return;
+        }
+        if (!"interval".equals(evt.getPropertyName()) || error != null) {
+            return;
+        }
+        if (start == null) {
+            CloudCityLogger.w(TAG, "propertyChange: interval before start, skipping it");
+            return;
+        }
+        if (runTags == null) {
+            timestamp = Integer.toUnsignedLong(start.getTimestamp().getTimesecs()) * 1000;
+            CloudCityLogger.d(TAG, "propertyChange: " + timestamp);
+            runTags = buildRunTags(start);
+        }
+        try {
+            writeInterval((Interval) evt.getNewValue(), intervalIdx++);
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    public Map<String, String> getTagsMap() {
+        if (tagsMap == null) {
+            tagsMap = Collections.unmodifiableMap(buildTagsMap());
+        }
+        return tagsMap;
+    }
+
+    private Map<String, String> buildTagsMap() {
+        String tags = spg.getSharedPreference(SPType.logging_sp).getString("tags", "").strip().replace(" ", "");
+        Map<String, String> tags_map = Collections.emptyMap();
+        if (!tags.isEmpty()) {
+            try {
+                tags_map = Splitter.on(',').withKeyValueSeparator('=').split(tags);
+            } catch (IllegalArgumentException e) {
+                CloudCityLogger.e(TAG, "can't parse tags, ignoring", e);
+            }
+        }
+        Map<String, String> tags_map_modifiable = new HashMap<>(tags_map);
+        tags_map_modifiable.put("measurement_name", spg.getSharedPreference(SPType.logging_sp).getString("measurement_name", "OMNT"));
+        tags_map_modifiable.put("manufacturer", di.getManufacturer());
+        tags_map_modifiable.put("model", di.getModel());
+        tags_map_modifiable.put("sdk_version", String.valueOf(di.getAndroidSDK()));
+        tags_map_modifiable.put("android_version", di.getAndroidRelease());
+        tags_map_modifiable.put("secruity_patch", di.getSecurityPatchLevel());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            tags_map_modifiable.put("soc_model", di.getSOCModel());
+        }
+        tags_map_modifiable.put("radio_version", Build.getRadioVersion());
+        return tags_map_modifiable;
+    }
+
+
+    /**
+     * @return the tags from {@link #getTagsMap()} which go on every point; only from Android S on, as
+     * it always was
+     */
+    private Map<String, String> getPointTagsMap() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return getTagsMap();
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * The tags every point of this run shares, built once from the start of the run.
+     * <p>
+     * The user's tags from {@link #getPointTagsMap()} are added last and win over the run's own tags
+     * with the same key, as they did when they were added to every point after converting.
+     */
+    private TreeMap<String, String> buildRunTags(Start start) {
+        TreeMap<String, String> runTags = new TreeMap<>();
+        runTags.put("run_uid", runID);
+        runTags.put("bidir", String.valueOf(biDir));
+        runTags.put("role", start.getConnecting_to() != null ? "client" : "server");
+        runTags.put("protocol", protocol);
+        runTags.put("interval", intervalIperf);
+        runTags.put("version", start.getVersion());
+        runTags.put("reversed", String.valueOf(rev));
+        runTags.put("oneOff", String.valueOf(oneOff));
+        if (start.getConnecting_to() != null) {
+            runTags.put("connectingToHost", start.getConnecting_to().getHost());
+            runTags.put("connectingToPort", String.valueOf(start.getConnecting_to().getPort()));
+        }
+        runTags.put("bandwidth", bandwidth);
+        runTags.put("duration", duration);
+        runTags.put("bytesToTransmit", bytes);
+        runTags.putAll(getPointTagsMap());
+        return runTags;
+    }
+
+    private void addStreamTag(Point point, String key, String value) {
+        if (!getPointTagsMap().containsKey(key)) {
+            point.addTag(key, value);
+        }
+    }
+
+    /**
+     * Write one point per stream of the interval
+     */
+    private void writeInterval(Interval interval, int intervalIdx) throws IOException {
+        long tmpTimestamp = timestamp + (long) (interval.getSum().getEnd() * 1000);
+        String intervalIdxTag = String.valueOf(intervalIdx);
+        ArrayList<Stream> streams = interval.getStreams().getStreamArrayList();
+        String streamsTag = String.valueOf(streams.size());
+        for (int streamIdx = 0; streamIdx < streams.size(); streamIdx++) {
+            Stream stream = streams.get(streamIdx);
+            Point point = new Point("Iperf3").addTags(runTags);
+            addStreamTag(point, "sender", String.valueOf(stream.getSender()));
+            addStreamTag(point, "socket", String.valueOf(stream.getSocket()));
+            addStreamTag(point, "streams", streamsTag);
+            addStreamTag(point, "streamIdx", String.valueOf(streamIdx));
+            addStreamTag(point, "intervalIdx", intervalIdxTag);
+
+            point.addField("bits_per_second", stream.getBits_per_second());
+            point.addField("seconds", stream.getSeconds());
+            point.addField("bytes", stream.getBytes());
+
+            switch (stream.getStreamType()){
+                case TCP_DL:
+                    break;
+                case TCP_UL:
+                    TCP_UL_STREAM tcp_ul_stream = (TCP_UL_STREAM) stream;
+                    point.addField("snd_cwnd", tcp_ul_stream.getSnd_cwnd());
+                    point.addField("retransmits", tcp_ul_stream.getRetransmits());
+                    point.addField("snd_wnd", tcp_ul_stream.getSnd_wnd());
+                    point.addField("rtt", tcp_ul_stream.getRtt());
+                    point.addField("rttvar", tcp_ul_stream.getRttvar());
+                    point.addField("pmtu", tcp_ul_stream.getPmtu());
+                    break;
+                case UDP_DL:
+                    UDP_DL_STREAM udp_dl_stream = (UDP_DL_STREAM) stream;
+                    point.addField("jitter_ms", udp_dl_stream.getJitter_ms());
+                    point.addField("lost_packets", udp_dl_stream.getLost_packets());
+                    point.addField("packets", udp_dl_stream.getPackets());
+                    point.addField("lost_percent", udp_dl_stream.getLost_percent());
+                    break;
+                case UDP_UL:
+                    break;
+                case UNKNOWN:
+                    break;
+            }
+
+            point.time(tmpTimestamp, WritePrecision.MS);
+            writer.write(point);
+        }
+    }
+}
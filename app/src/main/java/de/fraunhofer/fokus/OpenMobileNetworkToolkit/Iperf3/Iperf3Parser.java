@@ -2,21 +2,35 @@ package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3;
 
 import androidx.annotation.NonNull;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
 
 import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineFileReader;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Error;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.FlatJsonObject;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Interval;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.start.Start;
 
 
+/**
+ * Parses the JSON stream ({@code --json-stream}) iperf3 writes to its logfile, one event per line,
+ * and hands every event to the {@link PropertyChangeListener}s.
+ * <p>
+ * The parser remembers how far into the file it got, so every call only parses what was appended
+ * since the last one. {@link #parse()} parses the file up to its end, {@link #parseAppended()} can
+ * be called while iperf3 is still writing: it leaves a last line without a newline, which may still
+ * be half written, for the next call.
+ */
 public class Iperf3Parser {
     private static final String TAG = Iperf3Parser.class.getSimpleName();
 
@@ -30,10 +44,14 @@ public class Iperf3Parser {
 
     private final String pathToFile;
     private final File file;
-    private BufferedReader br = null;
-    private PropertyChangeSupport support;
+    private final PropertyChangeSupport support;
     private Start start;
     private final Intervals intervals = new Intervals();
+    private boolean keepIntervals = true;
+    // byte offset of the first line not parsed yet
+    private long offset = 0;
+    private boolean ended = false;
+    private final FlatJsonObject scratch = new FlatJsonObject();
 
     public static Iperf3Parser instantiate(@NonNull String pathToFile) {
         return new Iperf3Parser(pathToFile);
@@ -42,53 +60,19 @@ public class Iperf3Parser {
     Iperf3Parser(String pathToFile) {
         this.pathToFile = pathToFile;
         this.file = new File(this.pathToFile);
-        try {
-            br = new BufferedReader(new FileReader(file));
-        } catch (FileNotFoundException ex) {
-            System.out.println("File not found");
-            CloudCityLogger.e(TAG, "File not found!!! Path to file: "+pathToFile, ex);
-            return;
-        }
         this.support = new PropertyChangeSupport(this);
     }
 
+    /**
+     * Parse what's left of the file, up to its end, and notify the completion listener
+     */
     public void parse(){
-        String line;
+        if (!file.isFile()) {
+            CloudCityLogger.e(TAG, "File not found!!! Path to file: "+pathToFile);
+            return;
+        }
         try {
-            while ((line = br.readLine()) != null) {
-                JSONObject obj = new JSONObject(line);
-                String event = obj.getString("event");
-                switch (event) {
-                    case "start":
-                        CloudCityLogger.v(TAG, "Encountered START");
-                        start = new Start();
-                        JSONObject startData = obj.getJSONObject("data");
-                        start.parseStart(startData);
-                        break;
-                    case "interval":
-                        Interval interval = new Interval();
-                        JSONObject intervalData = obj.getJSONObject("data");
-                        interval.parse(intervalData);
-                        support.firePropertyChange("interval", null, interval);
-                        intervals.addInterval(interval);
-                        break;
-                    case "end":
-                        CloudCityLogger.v(TAG, "Encountered END\t\tcompletionListener: "+completionListener);
-                        System.out.println("End");
-                        support.firePropertyChange("end", null, END_MARKER);
-                        break;
-                    case "error":
-                        Error error = new Error();
-                        String errorString = obj.getString("data");
-                        error.parse(errorString);
-                        support.firePropertyChange("error", null, error);
-                        break;
-                    default:
-                        System.out.println("Unknown event");
-                        CloudCityLogger.w(TAG, "Unknown event "+event+" encountered during parsing!");
-                        break;
-                }
-            }
+            parseLines(true);
             if (completionListener != null) {
                 completionListener.onParseCompleted();
             }
@@ -98,6 +82,129 @@ public class Iperf3Parser {
         }
     }
 
+    /**
+     * Parse the lines appended to the file since the last call, while it may still be written to.
+     * Doesn't notify the completion listener, the "end" event tells when the run is over.
+     *
+     * @return how many lines were parsed, 0 if nothing new was appended or the file doesn't exist yet
+     */
+    public int parseAppended() {
+        if (!file.isFile() || file.length() <= offset) {
+            return 0;
+        }
+        try {
+            return parseLines(false);
+        } catch (Exception e) {
+            CloudCityLogger.e(TAG, "Exception " + e + " happened while trying to parse file!", e);
+            return 0;
+        }
+    }
+
+    private int parseLines(boolean toEnd) throws IOException {
+        int lines = 0;
+        try (LineFileReader reader = new LineFileReader(file, offset, toEnd)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                offset = reader.getOffset();
+                lines++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    parseLine(line);
+                } catch (JSONException | IOException | IllegalStateException | NumberFormatException e) {
+                    // a complete line won't get any better, skip it
+                    CloudCityLogger.e(TAG, "Can't parse line at byte " + reader.getLineStart() + " of " + pathToFile, e);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private void parseLine(String line) throws JSONException, IOException {
+        // intervals are nearly every line, they're read in one pass without building a tree;
+        // iperf3 writes the event before the data, anything else goes through the tree
+        JsonReader reader = new JsonReader(new StringReader(line));
+        reader.beginObject();
+        if (reader.hasNext() && "event".equals(reader.nextName()) && reader.peek() == JsonToken.STRING
+                && "interval".equals(reader.nextString())
+                && reader.hasNext() && "data".equals(reader.nextName())) {
+            Interval interval = new Interval();
+            interval.parse(reader, scratch);
+            onInterval(interval);
+            return;
+        }
+        parseTree(line);
+    }
+
+    private void onInterval(Interval interval) {
+        support.firePropertyChange("interval", null, interval);
+        if (keepIntervals) {
+            intervals.addInterval(interval);
+        }
+    }
+
+    private void parseTree(String line) throws JSONException {
+        JSONObject obj = new JSONObject(line);
+        String event = obj.getString("event");
+        switch (event) {
+            case "start":
+                CloudCityLogger.v(TAG, "Encountered START");
+                start = new Start();
+                JSONObject startData = obj.getJSONObject("data");
+                start.parseStart(startData);
+                support.firePropertyChange("start", null, start);
+                break;
+            case "interval":
+                Interval interval = new Interval();
+                JSONObject intervalData = obj.getJSONObject("data");
+                interval.parse(intervalData);
+                onInterval(interval);
+                break;
+            case "end":
+                CloudCityLogger.v(TAG, "Encountered END\t\tcompletionListener: "+completionListener);
+                ended = true;
+                support.firePropertyChange("end", null, END_MARKER);
+                break;
+            case "error":
+                Error error = new Error();
+                String errorString = obj.getString("data");
+                error.parse(errorString);
+                ended = true;
+                support.firePropertyChange("error", null, error);
+                break;
+            default:
+                System.out.println("Unknown event");
+                CloudCityLogger.w(TAG, "Unknown event "+event+" encountered during parsing!");
+                break;
+        }
+    }
+
+    /**
+     * @return whether an "end" or "error" event was parsed, after which iperf3 doesn't write any more
+     */
+    public boolean hasEnded() {
+        return ended;
+    }
+
+    /**
+     * @return the byte offset up to which the file was parsed
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Whether parsed intervals are collected for {@link #getIntervals()}, which they are by default.
+     * A listener that handles every interval as it's parsed can turn that off, so a long run doesn't
+     * stay on the heap.
+     *
+     * @param keepIntervals false to only hand intervals to the listeners
+     */
+    public void setKeepIntervals(boolean keepIntervals) {
+        this.keepIntervals = keepIntervals;
+    }
+
     public Intervals getIntervals() {
         return intervals;
     }
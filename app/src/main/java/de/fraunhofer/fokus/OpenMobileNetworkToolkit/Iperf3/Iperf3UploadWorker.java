@@ -15,19 +15,35 @@ import androidx.work.Data;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import com.influxdb.exceptions.InfluxException;
+
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import cloudcity.util.CloudCityLogger;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnection;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnections;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineFileReader;
 
+/**
+ * Uploads the line protocol file of an iperf3 run to the remote InfluxDB.
+ * <p>
+ * The file is streamed in chunks of {@link #CHUNK_LINES} lines, and every chunk has to be accepted by
+ * the server before the next one is read, so only one chunk is on the heap at a time and the worker
+ * only succeeds once everything arrived. After every chunk the byte offset reached is saved next to
+ * the file, so when the upload fails and WorkManager retries it, it resumes there.
+ */
 public class Iperf3UploadWorker extends Worker {
     private static final String TAG = "Iperf3UploadWorker";
+    public static final String PROGRESS = "iperf3_upload_progress";
+    private static final int CHUNK_LINES = 5000;
+    private static final int MAX_RUN_ATTEMPTS = 5;
+    private static final String OFFSET_SUFFIX = ".uploaded";
     InfluxdbConnection influx;
     private final String iperf3LineProtocolFile;
 
@@ -47,38 +63,79 @@ public class Iperf3UploadWorker extends Worker {
     public Result doWork() {
         setup();
         Data output = new Data.Builder().putBoolean("iperf3_upload", false).build();
-        if(influx == null){
+        if(influx == null || iperf3LineProtocolFile == null){
             return Result.failure(output);
         }
-        if(influx.getWriteApi() == null){
-            influx.open_write_api();
-            if(influx.getWriteApi() == null)
-                return Result.failure(output);
+        File file = new File(iperf3LineProtocolFile);
+        if (!file.isFile()) {
+            CloudCityLogger.e(TAG, String.format("doWork: %s doesn't exist", iperf3LineProtocolFile));
+            return Result.failure(output);
         }
 
         if(!influx.ping()){
-            return Result.failure(output);
+            return retryOrFail(output);
         }
-        BufferedReader br;
-        try {
-            br = new BufferedReader(new FileReader(iperf3LineProtocolFile));
-        } catch (FileNotFoundException | NullPointerException e) {
-            CloudCityLogger.e(TAG,e.toString(), e);
-            return Result.failure(output);
-        }
-        List<String> points = br.lines().collect(Collectors.toList());
-        try {
-            CloudCityLogger.d(TAG, String.format("doWork: uploading %s", iperf3LineProtocolFile));
-            influx.writeRecords(points);
+
+        File offsetFile = new File(iperf3LineProtocolFile + OFFSET_SUFFIX);
+        long offset = readOffset(offsetFile);
+        long total = file.length();
+        CloudCityLogger.d(TAG, String.format("doWork: uploading %s from byte %d of %d", iperf3LineProtocolFile, offset, total));
+        try (LineFileReader reader = new LineFileReader(file, offset, true)) {
+            List<String> chunk = new ArrayList<>(CHUNK_LINES);
+            String line;
+            do {
+                line = reader.readLine();
+                if (line != null && !line.isEmpty()) {
+                    chunk.add(line);
+                }
+                if (chunk.size() >= CHUNK_LINES || (line == null && !chunk.isEmpty())) {
+                    influx.writeRecordsAndWait(chunk);
+                    chunk = new ArrayList<>(CHUNK_LINES);
+                    offset = reader.getOffset();
+                    saveOffset(offsetFile, offset);
+                    setProgressAsync(new Data.Builder().putInt(PROGRESS, (int) (100 * offset / Math.max(1, total))).build());
+                    if (isStopped()) {
+                        CloudCityLogger.d(TAG, String.format("doWork: stopped at byte %d of %s", offset, iperf3LineProtocolFile));
+                        return Result.retry();
+                    }
+                }
+            } while (line != null);
         } catch (IOException e) {
-            CloudCityLogger.e(TAG, String.format("doWork: upload of %s failed!", iperf3LineProtocolFile), e);
+            CloudCityLogger.e(TAG, String.format("doWork: reading %s failed!", iperf3LineProtocolFile), e);
             return Result.failure(output);
+        } catch (InfluxException | IllegalStateException e) {
+            CloudCityLogger.e(TAG, String.format("doWork: upload of %s failed at byte %d!", iperf3LineProtocolFile, offset), e);
+            return retryOrFail(output);
         }
 
-
-        influx.flush();
-
+        if (offsetFile.exists() && !offsetFile.delete()) {
+            CloudCityLogger.w(TAG, "doWork: couldn't delete " + offsetFile);
+        }
         output = new Data.Builder().putBoolean("iperf3_upload", true).build();
         return Result.success(output);
     }
+
+    private Result retryOrFail(Data output) {
+        // what was uploaded so far stays uploaded, a retry resumes after it
+        return getRunAttemptCount() + 1 < MAX_RUN_ATTEMPTS ? Result.retry() : Result.failure(output);
+    }
+
+    private static long readOffset(File offsetFile) {
+        if (!offsetFile.isFile()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(offsetFile.toPath()), StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            CloudCityLogger.w(TAG, "readOffset: can't read " + offsetFile + ", uploading from the start");
+            return 0;
+        }
+    }
+
+    private static void saveOffset(File offsetFile, long offset) throws IOException {
+        // written to a temporary file and renamed, so a crash never leaves a half written offset
+        File tmp = new File(offsetFile.getPath() + ".tmp");
+        Files.write(tmp.toPath(), Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp.toPath(), offsetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 }
@@ -14,6 +14,8 @@ import android.app.Notification;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.HandlerThread;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
@@ -23,9 +25,21 @@ import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
 import cloudcity.util.CloudCityLogger;
+import cloudcity.util.FileTailer;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolWriter;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.R;
 
+/**
+ * Runs an iperf3 test. With a JSON stream logfile, the stream is parsed once while iperf3 writes it:
+ * the events go to {@link Iperf3EventBus} for the live metrics, and to an
+ * {@link Iperf3LineProtocolConverter} writing the run's line protocol file, so the file is complete
+ * when the test ends and only the upload is left for {@link Iperf3UploadWorker}.
+ */
 public class Iperf3Worker extends Worker {
     private static final String TAG = "iperf3Worker";
 
@@ -42,6 +56,7 @@ public class Iperf3Worker extends Worker {
     private final String protocol;
     private String serverPort;
     private final String ip;
+    private final String iperf3LineProtocolFile;
     private final int FOREGROUND_SERVICE_TYPE = FOREGROUND_SERVICE_TYPE_SPECIAL_USE;
 
     public Iperf3Worker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
@@ -55,6 +70,7 @@ public class Iperf3Worker extends Worker {
         ip = getInputData().getString("ip");
         serverPort = getInputData().getString("port");
         protocol = getInputData().getString("protocol");
+        iperf3LineProtocolFile = getInputData().getString("iperf3LineProtocolFile");
 
     }
 
@@ -80,6 +96,25 @@ public class Iperf3Worker extends Worker {
         return new ForegroundInfo(notificationID, notification, FOREGROUND_SERVICE_TYPE);
     }
 
+    /**
+     * @return the logfile iperf3 writes its JSON stream to, or null if it doesn't write one
+     */
+    private String jsonStreamLogfile() {
+        if (cmd == null) {
+            return null;
+        }
+        String logfile = null;
+        boolean jsonStream = false;
+        for (int i = 0; i < cmd.length; i++) {
+            if ("--logfile".equals(cmd[i]) && i + 1 < cmd.length) {
+                logfile = cmd[i + 1];
+            } else if ("--json-stream".equals(cmd[i])) {
+                jsonStream = true;
+            }
+        }
+        return jsonStream ? logfile : null;
+    }
+
     @Override
     public void onStopped() {
         CloudCityLogger.d(TAG, "onStopped: called!");
@@ -97,15 +132,75 @@ public class Iperf3Worker extends Worker {
 
         setForegroundAsync(createForegroundInfo(progress));
 
-        int result =
-            iperf3Wrapper(cmd, getApplicationContext().getApplicationInfo().nativeLibraryDir);
+        String logfile = jsonStreamLogfile();
+        HandlerThread publishThread = null;
+        Iperf3Parser parser = null;
+        FileTailer tailer = null;
+        LineProtocolWriter lpWriter = null;
+        Iperf3LineProtocolConverter lpConverter = null;
+        if (logfile != null && iperf3WorkerID != null) {
+            // parse the JSON stream once while iperf3 writes it, and hand the events to everyone
+            // else in memory
+            parser = Iperf3Parser.instantiate(logfile);
+            parser.setKeepIntervals(false);
+            parser.addPropertyChangeListener(evt -> Iperf3EventBus.publish(iperf3WorkerID, evt));
+            if (iperf3LineProtocolFile != null) {
+                try {
+                    lpWriter = new LineProtocolWriter(new FileOutputStream(iperf3LineProtocolFile));
+                    lpConverter = new Iperf3LineProtocolConverter(getApplicationContext(), getInputData(), lpWriter);
+                    parser.addPropertyChangeListener(lpConverter);
+                } catch (IOException e) {
+                    CloudCityLogger.e(TAG, "doWork: can't create " + iperf3LineProtocolFile, e);
+                }
+            }
+            publishThread = new HandlerThread("Iperf3PublishThread");
+            publishThread.start();
+            Iperf3Parser tailedParser = parser;
+            tailer = new FileTailer(new File(logfile), new Handler(publishThread.getLooper()), () -> tailedParser.parseAppended() > 0);
+            tailer.start();
+        }
+
+        int result;
+        try {
+            result = iperf3Wrapper(cmd, getApplicationContext().getApplicationInfo().nativeLibraryDir);
+        } finally {
+            if (tailer != null) {
+                tailer.stop();
+                publishThread.quitSafely();
+                try {
+                    publishThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // iperf3 is done writing, publish whatever the tailer didn't get to
+                parser.parseAppended();
+                Iperf3EventBus.finish(iperf3WorkerID);
+            }
+        }
         CloudCityLogger.d(TAG, "doWork: " + result);
 
+        boolean lpFailed = false;
+        if (lpWriter != null) {
+            IOException lpError = lpConverter.getError();
+            try {
+                lpWriter.close();
+            } catch (IOException e) {
+                if (lpError == null) {
+                    lpError = e;
+                }
+            }
+            if (lpError != null) {
+                CloudCityLogger.e(TAG, "doWork: writing " + iperf3LineProtocolFile + " failed", lpError);
+                lpFailed = true;
+            }
+        }
 
         Data.Builder output = new Data.Builder()
             .putInt("iperf3_result", result)
-            .putString("iperf3WorkerID", iperf3WorkerID);
-        if (result == 0) {
+            .putString("iperf3WorkerID", iperf3WorkerID)
+            .putBoolean("iperf3_to_lp", lpConverter != null && !lpFailed);
+        // the upload that follows needs the whole line protocol file
+        if (result == 0 && !lpFailed) {
             return Result.success(output.build());
         }
         return Result.failure(output
@@ -0,0 +1,143 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.stream.JsonReader;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A JSON object of numbers, booleans and strings, read with a {@link JsonReader} into a few arrays
+ * instead of a {@link org.json.JSONObject} tree. Nested objects and arrays are skipped; they only
+ * count for {@link #has(String)}.
+ * <p>
+ * Meant to be reused: every {@link #read(JsonReader)} replaces what was read before, so a whole
+ * interval with all its streams is read through one instance.
+ * <p>
+ * Numbers are kept as doubles, so {@link #getInt(String)} and {@link #getLong(String)} give the same
+ * as {@link org.json.JSONObject}'s for every value up to 2^53.
+ */
+public class FlatJsonObject implements JsonFields {
+    private static final byte NUMBER = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte STRING = 2;
+    private static final byte OTHER = 3;
+
+    private String[] names = new String[16];
+    private byte[] kinds = new byte[16];
+    private double[] numbers = new double[16];
+    private String[] strings = new String[16];
+    private int size = 0;
+
+    /**
+     * Read the next value of the reader, which has to be an object
+     *
+     * @param reader the reader, positioned before the object
+     * @throws IOException if the reader doesn't hold a valid object
+     */
+    public void read(@NonNull JsonReader reader) throws IOException {
+        size = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (size == names.length) {
+                grow();
+            }
+            names[size] = name;
+            strings[size] = null;
+            switch (reader.peek()) {
+                case NUMBER:
+                    kinds[size] = NUMBER;
+                    numbers[size] = reader.nextDouble();
+                    break;
+                case BOOLEAN:
+                    kinds[size] = BOOLEAN;
+                    numbers[size] = reader.nextBoolean() ? 1 : 0;
+                    break;
+                case STRING:
+                    kinds[size] = STRING;
+                    strings[size] = reader.nextString();
+                    break;
+                default:
+                    kinds[size] = OTHER;
+                    reader.skipValue();
+                    break;
+            }
+            size++;
+        }
+        reader.endObject();
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        strings = Arrays.copyOf(strings, capacity);
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private double number(String name) throws JSONException {
+        int i = indexOf(name);
+        if (i < 0) {
+            throw new JSONException("No value for " + name);
+        }
+        if (kinds[i] == NUMBER) {
+            return numbers[i];
+        }
+        if (kinds[i] == STRING) {
+            try {
+                return Double.parseDouble(strings[i]);
+            } catch (NumberFormatException e) {
+                // reported below, like any other value that isn't a number
+            }
+        }
+        throw new JSONException("Value at " + name + " is not a number");
+    }
+
+    @Override
+    public boolean has(@NonNull String name) {
+        return indexOf(name) >= 0;
+    }
+
+    @Override
+    public int getInt(@NonNull String name) throws JSONException {
+        return (int) number(name);
+    }
+
+    @Override
+    public long getLong(@NonNull String name) throws JSONException {
+        return (long) number(name);
+    }
+
+    @Override
+    public double getDouble(@NonNull String name) throws JSONException {
+        return number(name);
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull String name) throws JSONException {
+        int i = indexOf(name);
+        if (i < 0) {
+            throw new JSONException("No value for " + name);
+        }
+        if (kinds[i] == BOOLEAN) {
+            return numbers[i] != 0;
+        }
+        if (kinds[i] == STRING && ("true".equalsIgnoreCase(strings[i]) || "false".equalsIgnoreCase(strings[i]))) {
+            return "true".equalsIgnoreCase(strings[i]);
+        }
+        throw new JSONException("Value at " + name + " is not a boolean");
+    }
+}
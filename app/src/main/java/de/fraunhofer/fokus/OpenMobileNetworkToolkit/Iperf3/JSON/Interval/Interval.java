@@ -14,9 +14,16 @@ import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.UDP
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.UDP.UDP_DL_SUM;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.UDP.UDP_SUM;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.UDP.UDP_UL_SUM;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.FlatJsonObject;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
+
+import com.google.gson.stream.JsonReader;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 public class Interval {
     private final Streams streams;
     private Sum sum;
@@ -26,7 +33,7 @@ public class Interval {
         streams = new Streams();
     }
 
-    private SUM_TYPE getSumType(JSONObject data) throws JSONException {
+    private SUM_TYPE getSumType(JsonFields data) throws JSONException {
         boolean sender = data.getBoolean("sender");
         if(sender){
             if(data.has("retransmits")) return SUM_TYPE.TCP_UL;
@@ -37,6 +44,10 @@ public class Interval {
     }
 
     public Sum identifySum(JSONObject data) throws JSONException {
+        return identifySum(JsonFields.of(data));
+    }
+
+    public Sum identifySum(JsonFields data) throws JSONException {
         Sum identifiedSum = null;
         switch (getSumType(data)){
             case TCP_DL:
@@ -67,6 +78,44 @@ public class Interval {
         }
     }
 
+    /**
+     * Parse the interval's data straight from the reader, in one pass and without building a
+     * {@link JSONObject} tree first; gives the same as {@link #parse(JSONObject)}
+     *
+     * @param reader  the reader, positioned before the interval's data object
+     * @param scratch reused for every stream and sum of the interval
+     */
+    public void parse(JsonReader reader, FlatJsonObject scratch) throws IOException, JSONException {
+        boolean hasStreams = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "streams":
+                    streams.parse(reader, scratch);
+                    hasStreams = true;
+                    break;
+                case "sum":
+                    scratch.read(reader);
+                    sum = identifySum(scratch);
+                    break;
+                case "sum_bidir_reverse":
+                    scratch.read(reader);
+                    sumBidirReverse = identifySum(scratch);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (!hasStreams) {
+            throw new JSONException("No value for streams");
+        }
+        if (sum == null) {
+            throw new JSONException("No value for sum");
+        }
+    }
+
     public Streams getStreams() {
         return streams;
     }
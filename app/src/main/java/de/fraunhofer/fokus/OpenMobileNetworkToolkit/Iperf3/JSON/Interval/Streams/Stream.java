@@ -1,5 +1,6 @@
 package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams;
 
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -18,6 +19,10 @@ public class Stream {
     public Stream(){
     }
     public void parse(JSONObject data) throws JSONException {
+        parse(JsonFields.of(data));
+    }
+
+    public void parse(JsonFields data) throws JSONException {
         this.socket = data.getInt("socket");
         this.start = data.getInt("start");
         this.end = data.getDouble("end");
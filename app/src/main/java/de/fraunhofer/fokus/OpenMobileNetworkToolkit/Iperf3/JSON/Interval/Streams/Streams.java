@@ -4,18 +4,27 @@ import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.TCP.TCP_UL_STREAM;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.UDP.UDP_DL_STREAM;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.UDP.UDP_UL_STREAM;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.FlatJsonObject;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import cloudcity.util.CloudCityLogger;
+
 public class Streams {
+    private static final String TAG = "Streams";
     private final ArrayList<Stream> streams;
     public Streams(){
         this.streams = new ArrayList<>();
     }
 
-    private STREAM_TYPE identifyStream(JSONObject data) throws JSONException {
+    private STREAM_TYPE identifyStream(JsonFields data) throws JSONException {
         boolean sender = data.getBoolean("sender");
         if(sender){
             if(data.has("retransmits")) return STREAM_TYPE.TCP_UL;
@@ -25,7 +34,7 @@ public class Streams {
         return STREAM_TYPE.TCP_DL;
     }
 
-    private Stream parseStream(JSONObject data) throws JSONException{
+    private Stream parseStream(JsonFields data) throws JSONException{
         STREAM_TYPE type = identifyStream(data);
         Stream stream = null;
         switch (type) {
@@ -51,7 +60,7 @@ public class Streams {
     public void parse(JSONArray streams) throws JSONException {
         for (int i = 0; i < streams.length(); i++) {
             JSONObject streamJSONObject = streams.getJSONObject(i);
-            Stream stream = parseStream(streamJSONObject);
+            Stream stream = parseStream(JsonFields.of(streamJSONObject));
             if(stream == null){
                 System.out.println("Stream is null!");
                 continue;
@@ -59,6 +68,26 @@ public class Streams {
             addStream(stream);
         }
     }
+    /**
+     * Parse the streams array straight from the reader, see {@link #parse(JSONArray)}
+     *
+     * @param reader  the reader, positioned before the array
+     * @param scratch reused for every stream
+     */
+    public void parse(JsonReader reader, FlatJsonObject scratch) throws IOException, JSONException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            scratch.read(reader);
+            Stream stream = parseStream(scratch);
+            if(stream == null){
+                CloudCityLogger.w(TAG, "parse: stream is null, skipping it");
+                continue;
+            }
+            addStream(stream);
+        }
+        reader.endArray();
+    }
+
     public int size(){
         return streams.size();
     }
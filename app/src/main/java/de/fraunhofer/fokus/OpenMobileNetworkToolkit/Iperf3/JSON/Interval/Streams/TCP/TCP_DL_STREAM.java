@@ -2,14 +2,14 @@ package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Stream
 
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.STREAM_TYPE;
 
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 public class TCP_DL_STREAM extends TCP_STREAM {
     public TCP_DL_STREAM(){
         super();
     }
-    public void parse(JSONObject data) throws JSONException {
+    public void parse(JsonFields data) throws JSONException {
         super.parse(data);
         this.setStreamType(STREAM_TYPE.TCP_DL);
     }
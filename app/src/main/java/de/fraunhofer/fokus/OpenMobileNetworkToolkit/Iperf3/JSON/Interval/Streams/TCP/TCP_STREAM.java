@@ -1,14 +1,14 @@
 package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.TCP;
 
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.Stream;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 public class TCP_STREAM extends Stream {
     public TCP_STREAM(){
         super();
     }
-    public void parse(JSONObject data) throws JSONException {
+    public void parse(JsonFields data) throws JSONException {
         super.parse(data);
     }
 }
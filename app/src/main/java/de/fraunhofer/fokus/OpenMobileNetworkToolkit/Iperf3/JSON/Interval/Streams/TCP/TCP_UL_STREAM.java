@@ -1,8 +1,8 @@
 package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.TCP;
 
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.STREAM_TYPE;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 public class TCP_UL_STREAM extends TCP_STREAM {
     private int retransmits;
@@ -15,7 +15,7 @@ public class TCP_UL_STREAM extends TCP_STREAM {
     public TCP_UL_STREAM(){
         super();
     }
-    public void parse(JSONObject data) throws JSONException {
+    public void parse(JsonFields data) throws JSONException {
         super.parse(data);
         this.retransmits = data.getInt("retransmits");
         this.snd_cwnd = data.getInt("snd_cwnd");
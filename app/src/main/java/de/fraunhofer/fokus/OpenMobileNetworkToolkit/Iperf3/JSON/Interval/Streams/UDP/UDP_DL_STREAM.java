@@ -1,8 +1,8 @@
 package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.UDP;
 
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Streams.STREAM_TYPE;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 public class UDP_DL_STREAM extends UDP_STREAM {
     private double jitter_ms;
@@ -12,7 +12,7 @@ public class UDP_DL_STREAM extends UDP_STREAM {
     public UDP_DL_STREAM(){
         super();
     }
-    public void parse(JSONObject data) throws JSONException {
+    public void parse(JsonFields data) throws JSONException {
         super.parse(data);
         this.jitter_ms = data.getDouble("jitter_ms");
         this.lost_packets = data.getInt("lost_packets");
@@ -1,5 +1,6 @@
 package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum;
 
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -15,6 +16,10 @@ public class Sum {
     public Sum(){
     }
     public void parse(JSONObject data) throws JSONException {
+        parse(JsonFields.of(data));
+    }
+
+    public void parse(JsonFields data) throws JSONException {
         this.start = data.getInt("start");
         this.end = (float) data.getDouble("end");
         this.seconds = (float) data.getDouble("seconds");
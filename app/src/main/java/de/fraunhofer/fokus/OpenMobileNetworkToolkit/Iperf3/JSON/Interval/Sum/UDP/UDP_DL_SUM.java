@@ -1,8 +1,8 @@
 package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.UDP;
 
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.Interval.Sum.SUM_TYPE;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON.JsonFields;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 public class UDP_DL_SUM extends UDP_SUM{
     private double jitter_ms;
@@ -14,7 +14,7 @@ public class UDP_DL_SUM extends UDP_SUM{
     }
 
     @Override
-    public void parse(JSONObject data) throws JSONException {
+    public void parse(JsonFields data) throws JSONException {
         super.parse(data);
         this.jitter_ms = data.getDouble("jitter_ms");
         this.lost_packets = data.getInt("lost_packets");
@@ -0,0 +1,56 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Iperf3.JSON;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The fields of one JSON object, as the iperf3 model classes read them. Implemented by a
+ * {@link JSONObject} through {@link #of(JSONObject)}, and by {@link FlatJsonObject} which is read
+ * straight from a stream, so both are parsed by the same code.
+ * <p>
+ * The getters behave like {@link JSONObject}'s: they throw a {@link JSONException} when the field is
+ * missing or can't be converted.
+ */
+public interface JsonFields {
+    boolean has(@NonNull String name);
+
+    int getInt(@NonNull String name) throws JSONException;
+
+    long getLong(@NonNull String name) throws JSONException;
+
+    double getDouble(@NonNull String name) throws JSONException;
+
+    boolean getBoolean(@NonNull String name) throws JSONException;
+
+    @NonNull
+    static JsonFields of(@NonNull JSONObject object) {
+        return new JsonFields() {
+            @Override
+            public boolean has(@NonNull String name) {
+                return object.has(name);
+            }
+
+            @Override
+            public int getInt(@NonNull String name) throws JSONException {
+                return object.getInt(name);
+            }
+
+            @Override
+            public long getLong(@NonNull String name) throws JSONException {
+                return object.getLong(name);
+            }
+
+            @Override
+            public double getDouble(@NonNull String name) throws JSONException {
+                return object.getDouble(name);
+            }
+
+            @Override
+            public boolean getBoolean(@NonNull String name) throws JSONException {
+                return object.getBoolean(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import android.icu.text.SimpleDateFormat;
+
+import androidx.annotation.NonNull;
+
+import com.influxdb.client.write.Point;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Writes the points of every sample to a local file in the compact binary format of
+ * {@link BinaryLogWriter}. {@link BinaryLogExportWorker} uploads the files on demand.
+ * <p>
+ * A sample counts as durable once the block holding it was written and synced to the storage device.
+ */
+public class BinaryFileSink implements LoggingSink {
+    public static final String NAME = "LocalBinaryFile";
+    private static final String TAG = "BinaryFileSink";
+    // a block is written and synced at the latest after this long; samples not in a synced block yet
+    // stay in the sample ring buffer until they are
+    private static final long BLOCK_INTERVAL_MS = 10 * 1000;
+
+    private final File file;
+    private final FileOutputStream stream;
+    private final BinaryLogWriter writer;
+    // only touched on the sink's thread
+    private long writes = 0;
+    private final AtomicLong durableWrites = new AtomicLong(0);
+    private long lastBlock = System.currentTimeMillis();
+
+    /**
+     * @param directory the directory to put the log file into, which has to exist already
+     * @throws IOException if the log file can't be created
+     */
+    public BinaryFileSink(@NonNull File directory) throws IOException {
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss", Locale.US);
+        String name = formatter.format(new Date());
+        File candidate = new File(directory, name + BinaryLogFormat.EXTENSION);
+        for (int i = 1; candidate.exists(); i++) {
+            candidate = new File(directory, name + "_" + i + BinaryLogFormat.EXTENSION);
+        }
+        file = candidate;
+        stream = new FileOutputStream(file);
+        writer = new BinaryLogWriter(new BufferedOutputStream(stream, 64 * 1024));
+        CloudCityLogger.d(TAG, "logfile: " + file);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @NonNull
+    @Override
+    public Set<Part> getRequiredParts() {
+        return EnumSet.of(Part.POINTS);
+    }
+
+    @Override
+    public void write(@NonNull LoggingSnapshot snapshot) throws IOException {
+        for (Point point : snapshot.getPoints()) {
+            writer.write(point);
+        }
+        writes++;
+        long now = System.currentTimeMillis();
+        if (now - lastBlock >= BLOCK_INTERVAL_MS) {
+            sync();
+            lastBlock = now;
+        }
+    }
+
+    /**
+     * Write the current block, hand it to the file system and force it to the storage device
+     */
+    private void sync() throws IOException {
+        writer.flush();
+        stream.getFD().sync();
+        durableWrites.set(writes);
+    }
+
+    @Override
+    public long getDurableWrites() {
+        return durableWrites.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            try {
+                sync();
+            } finally {
+                writer.close();
+            }
+            CloudCityLogger.d(TAG, "closed " + file + " with " + writer.getLinesWritten() + " lines in "
+                    + writer.getBytesWritten() + " bytes");
+        } catch (IOException e) {
+            // a block cut short at the end is skipped when reading, the file is still worth uploading
+            CloudCityLogger.e(TAG, e.toString(), e);
+        }
+    }
+}
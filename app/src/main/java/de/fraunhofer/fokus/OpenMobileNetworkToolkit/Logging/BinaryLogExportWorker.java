@@ -0,0 +1,141 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.influxdb.exceptions.InfluxException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnection;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnections;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineFileReader;
+
+/**
+ * Uploads a binary log written by {@link BinaryFileSink} to the remote InfluxDB, when the user asks
+ * for it.
+ * <p>
+ * The log is converted to a temporary line protocol file in the cache directory, which is streamed to
+ * the server in chunks of {@link #CHUNK_LINES} lines and deleted afterwards, so only the compact binary
+ * log stays on the device. A retry converts and uploads it from the start again; points the server
+ * already has are overwritten with the same values.
+ */
+public class BinaryLogExportWorker extends Worker {
+    private static final String TAG = "BinaryLogExportWorker";
+    public static final String BINARY_LOG_FILE = "binaryLogFile";
+    private static final int CHUNK_LINES = 5000;
+    private static final int MAX_RUN_ATTEMPTS = 5;
+
+    private final String binaryLogFile;
+
+    public BinaryLogExportWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+        binaryLogFile = getInputData().getString(BINARY_LOG_FILE);
+    }
+
+    /**
+     * @param binaryLog the binary log to upload
+     * @return the request uploading it, once there's a network
+     */
+    @NonNull
+    public static OneTimeWorkRequest request(@NonNull File binaryLog) {
+        return new OneTimeWorkRequest.Builder(BinaryLogExportWorker.class)
+                .setInputData(new Data.Builder().putString(BINARY_LOG_FILE, binaryLog.getPath()).build())
+                .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .addTag(TAG)
+                .build();
+    }
+
+    /**
+     * Upload every binary log in the directory, skipping the ones already waiting to be uploaded. A
+     * log still being written is uploaded up to its last complete block.
+     *
+     * @param context   for the {@link WorkManager}
+     * @param directory the directory {@link BinaryFileSink} writes to
+     * @return how many logs were found
+     */
+    public static int uploadAll(@NonNull Context context, @NonNull File directory) {
+        File[] logs = directory.listFiles((dir, name) -> name.endsWith(BinaryLogFormat.EXTENSION));
+        if (logs == null) {
+            return 0;
+        }
+        WorkManager workManager = WorkManager.getInstance(context);
+        for (File log : logs) {
+            workManager.enqueueUniqueWork(TAG + ":" + log.getName(), ExistingWorkPolicy.KEEP, request(log));
+        }
+        CloudCityLogger.d(TAG, "uploadAll: " + logs.length + " binary logs in " + directory);
+        return logs.length;
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        if (binaryLogFile == null) {
+            return Result.failure();
+        }
+        File binaryLog = new File(binaryLogFile);
+        if (!binaryLog.isFile()) {
+            CloudCityLogger.e(TAG, "doWork: " + binaryLog + " doesn't exist");
+            return Result.failure();
+        }
+        InfluxdbConnection influx = InfluxdbConnections.getRicInstance(getApplicationContext());
+        if (influx == null) {
+            CloudCityLogger.e(TAG, "doWork: no remote InfluxDB configured");
+            return Result.failure();
+        }
+
+        File lineProtocol;
+        try {
+            lineProtocol = File.createTempFile(binaryLog.getName(), ".txt", getApplicationContext().getCacheDir());
+        } catch (IOException e) {
+            CloudCityLogger.e(TAG, "doWork: can't create a temporary file", e);
+            return Result.failure();
+        }
+        try {
+            long lines = BinaryLogReader.convertToLineProtocol(binaryLog, lineProtocol);
+            CloudCityLogger.d(TAG, "doWork: uploading " + lines + " lines of " + binaryLog);
+            upload(influx, lineProtocol);
+        } catch (IOException e) {
+            CloudCityLogger.e(TAG, "doWork: converting " + binaryLog + " failed", e);
+            return Result.failure();
+        } catch (InfluxException | IllegalStateException e) {
+            CloudCityLogger.e(TAG, "doWork: uploading " + binaryLog + " failed", e);
+            return getRunAttemptCount() + 1 < MAX_RUN_ATTEMPTS ? Result.retry() : Result.failure();
+        } finally {
+            if (!lineProtocol.delete()) {
+                CloudCityLogger.w(TAG, "doWork: couldn't delete " + lineProtocol);
+            }
+        }
+        return Result.success();
+    }
+
+    private static void upload(InfluxdbConnection influx, File lineProtocol) throws IOException {
+        try (LineFileReader reader = new LineFileReader(lineProtocol, 0, true)) {
+            List<String> chunk = new ArrayList<>(CHUNK_LINES);
+            String line;
+            do {
+                line = reader.readLine();
+                if (line != null && !line.isEmpty()) {
+                    chunk.add(line);
+                }
+                if (chunk.size() >= CHUNK_LINES || (line == null && !chunk.isEmpty())) {
+                    influx.writeRecordsAndWait(chunk);
+                    chunk = new ArrayList<>(CHUNK_LINES);
+                }
+            } while (line != null);
+        }
+    }
+}
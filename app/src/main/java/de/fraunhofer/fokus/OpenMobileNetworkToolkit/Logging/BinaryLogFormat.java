@@ -0,0 +1,171 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolParser.FieldType;
+
+/**
+ * Constants and encoding helpers shared by {@link BinaryLogWriter} and {@link BinaryLogReader}.
+ * <p>
+ * A binary log file starts with {@link #MAGIC} and a version byte, followed by blocks. Every block is
+ * framed as {@code int length, payload, int crc32(payload)}, so a block cut short by a crash is detected
+ * and only that block is lost. A payload holds, in this order:
+ * <ol>
+ *     <li>strings new to the file's dictionary: count, then length-prefixed UTF-8 strings. Measurements,
+ *     tag keys and values, field keys and string field values are all stored as dictionary ids.</li>
+ *     <li>shapes new to the file: count, then for each shape the measurement, whether it has a
+ *     timestamp, its tags and its field keys and types. Lines with the same measurement, tags and
+ *     fields share one shape.</li>
+ *     <li>the number of rows, then the shape id of every row, keeping the order of the lines</li>
+ *     <li>the timestamps of all rows with a timestamp, delta encoded</li>
+ *     <li>for every shape used in the block, in the order of first use, one column per field holding
+ *     the values of all rows of that shape: floats XOR-ed with the previous value, integers delta
+ *     encoded, booleans as one byte and strings as dictionary ids</li>
+ * </ol>
+ * All counts, ids and deltas are unsigned or zigzag varints.
+ */
+final class BinaryLogFormat {
+    static final byte[] MAGIC = {'O', 'M', 'N', 'T', 'B'};
+    static final int VERSION = 1;
+    static final String EXTENSION = ".omntb";
+    // guards against reading garbage lengths from a corrupt file
+    static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+
+    private static final FieldType[] FIELD_TYPES = FieldType.values();
+
+    private BinaryLogFormat() {
+    }
+
+    /**
+     * Measurement, tags and fields of a group of lines, as dictionary ids
+     */
+    static final class Shape {
+        final int measurement;
+        final boolean hasTime;
+        final int[] tagKeys;
+        final int[] tagValues;
+        final int[] fieldKeys;
+        final FieldType[] fieldTypes;
+
+        Shape(int measurement, boolean hasTime, int[] tagKeys, int[] tagValues, int[] fieldKeys, FieldType[] fieldTypes) {
+            this.measurement = measurement;
+            this.hasTime = hasTime;
+            this.tagKeys = tagKeys;
+            this.tagValues = tagValues;
+            this.fieldKeys = fieldKeys;
+            this.fieldTypes = fieldTypes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Shape)) return false;
+            Shape shape = (Shape) o;
+            return measurement == shape.measurement
+                    && hasTime == shape.hasTime
+                    && Arrays.equals(tagKeys, shape.tagKeys)
+                    && Arrays.equals(tagValues, shape.tagValues)
+                    && Arrays.equals(fieldKeys, shape.fieldKeys)
+                    && Arrays.equals(fieldTypes, shape.fieldTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * measurement + (hasTime ? 1 : 0);
+            result = 31 * result + Arrays.hashCode(tagKeys);
+            result = 31 * result + Arrays.hashCode(tagValues);
+            result = 31 * result + Arrays.hashCode(fieldKeys);
+            result = 31 * result + Arrays.hashCode(fieldTypes);
+            return result;
+        }
+
+        void writeTo(ByteArrayOutputStream out) {
+            writeVarLong(out, measurement);
+            out.write(hasTime ? 1 : 0);
+            writeVarLong(out, tagKeys.length);
+            for (int i = 0; i < tagKeys.length; i++) {
+                writeVarLong(out, tagKeys[i]);
+                writeVarLong(out, tagValues[i]);
+            }
+            writeVarLong(out, fieldKeys.length);
+            for (int i = 0; i < fieldKeys.length; i++) {
+                writeVarLong(out, fieldKeys[i]);
+                out.write(fieldTypes[i].ordinal());
+            }
+        }
+
+        static Shape readFrom(ByteBuffer in) {
+            int measurement = readVarInt(in);
+            boolean hasTime = in.get() != 0;
+            int tagCount = readVarInt(in);
+            int[] tagKeys = new int[tagCount];
+            int[] tagValues = new int[tagCount];
+            for (int i = 0; i < tagCount; i++) {
+                tagKeys[i] = readVarInt(in);
+                tagValues[i] = readVarInt(in);
+            }
+            int fieldCount = readVarInt(in);
+            int[] fieldKeys = new int[fieldCount];
+            FieldType[] fieldTypes = new FieldType[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                fieldKeys[i] = readVarInt(in);
+                int type = in.get();
+                if (type < 0 || type >= FIELD_TYPES.length) {
+                    throw new IllegalArgumentException("unknown field type " + type);
+                }
+                fieldTypes[i] = FIELD_TYPES[type];
+            }
+            return new Shape(measurement, hasTime, tagKeys, tagValues, fieldKeys, fieldTypes);
+        }
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("varint out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Encode a float relative to the previous value of its column. Repeated values become 0, and values
+     * which only differ in their high mantissa bits (like most of what we log) become small numbers.
+     */
+    static long encodeDouble(double value, double previous) {
+        return Long.reverse(Double.doubleToRawLongBits(value) ^ Double.doubleToRawLongBits(previous));
+    }
+
+    static double decodeDouble(long encoded, double previous) {
+        return Double.longBitsToDouble(Long.reverse(encoded) ^ Double.doubleToRawLongBits(previous));
+    }
+}
@@ -0,0 +1,222 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolParser;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolParser.FieldType;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolWriter;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.BinaryLogFormat.Shape;
+
+/**
+ * Reads logs written by {@link BinaryLogWriter}, and converts them back to line protocol.
+ * <p>
+ * A block cut short or corrupted at the end of the file, e.g. because the app was killed while writing
+ * it, ends reading without an error; everything before it is still read.
+ */
+public class BinaryLogReader implements Closeable {
+    private static final String TAG = "BinaryLogReader";
+
+    public interface LineConsumer {
+        void accept(@NonNull LineProtocolParser.Line line) throws IOException;
+    }
+
+    private final DataInputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    private final List<Shape> shapes = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * @param in the stream to read from, which is closed by {@link #close()}
+     * @throws IOException if the stream doesn't start with a binary log header
+     */
+    public BinaryLogReader(@NonNull InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        byte[] magic = new byte[BinaryLogFormat.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryLogFormat.MAGIC)) {
+            throw new IOException("not a binary log");
+        }
+        int version = this.in.read();
+        if (version != BinaryLogFormat.VERSION) {
+            throw new IOException("unsupported binary log version " + version);
+        }
+    }
+
+    /**
+     * Read all lines, in the order they were written
+     *
+     * @param consumer gets every line
+     * @return how many lines were read
+     * @throws IOException if reading failed, or the consumer threw
+     */
+    public long forEachLine(@NonNull LineConsumer consumer) throws IOException {
+        long lines = 0;
+        while (true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                if (length < 0 || length > BinaryLogFormat.MAX_BLOCK_BYTES) {
+                    CloudCityLogger.w(TAG, "invalid block length " + length + ", stopping");
+                    return lines;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                int expectedCrc = in.readInt();
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    CloudCityLogger.w(TAG, "corrupt block after " + lines + " lines, stopping");
+                    return lines;
+                }
+            } catch (EOFException e) {
+                // either the regular end of the file or a block cut short
+                return lines;
+            }
+            try {
+                lines += readBlock(ByteBuffer.wrap(payload), consumer);
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("malformed block after " + lines + " lines", e);
+            }
+        }
+    }
+
+    private int readBlock(ByteBuffer block, LineConsumer consumer) throws IOException {
+        int newStrings = BinaryLogFormat.readVarInt(block);
+        for (int i = 0; i < newStrings; i++) {
+            byte[] bytes = new byte[BinaryLogFormat.readVarInt(block)];
+            block.get(bytes);
+            dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        int newShapes = BinaryLogFormat.readVarInt(block);
+        for (int i = 0; i < newShapes; i++) {
+            shapes.add(Shape.readFrom(block));
+        }
+
+        int rows = BinaryLogFormat.readVarInt(block);
+        int[] rowShapes = new int[rows];
+        Map<Integer, List<Integer>> rowsByShape = new LinkedHashMap<>();
+        for (int row = 0; row < rows; row++) {
+            rowShapes[row] = BinaryLogFormat.readVarInt(block);
+            List<Integer> shapeRows = rowsByShape.get(rowShapes[row]);
+            if (shapeRows == null) {
+                shapeRows = new ArrayList<>();
+                rowsByShape.put(rowShapes[row], shapeRows);
+            }
+            shapeRows.add(row);
+        }
+
+        long[] rowTimes = new long[rows];
+        long previousTime = 0;
+        for (int row = 0; row < rows; row++) {
+            if (shapes.get(rowShapes[row]).hasTime) {
+                previousTime += BinaryLogFormat.unzigzag(BinaryLogFormat.readVarLong(block));
+                rowTimes[row] = previousTime;
+            }
+        }
+
+        Object[][] rowValues = new Object[rows][];
+        for (Map.Entry<Integer, List<Integer>> entry : rowsByShape.entrySet()) {
+            Shape shape = shapes.get(entry.getKey());
+            for (int row : entry.getValue()) {
+                rowValues[row] = new Object[shape.fieldTypes.length];
+            }
+            for (int field = 0; field < shape.fieldTypes.length; field++) {
+                readColumn(block, shape.fieldTypes[field], field, entry.getValue(), rowValues);
+            }
+        }
+
+        for (int row = 0; row < rows; row++) {
+            consumer.accept(toLine(shapes.get(rowShapes[row]), rowTimes[row], rowValues[row]));
+        }
+        return rows;
+    }
+
+    private void readColumn(ByteBuffer block, FieldType type, int field, List<Integer> shapeRows, Object[][] rowValues) {
+        switch (type) {
+            case FLOAT: {
+                double previous = 0;
+                for (int row : shapeRows) {
+                    previous = BinaryLogFormat.decodeDouble(BinaryLogFormat.readVarLong(block), previous);
+                    rowValues[row][field] = previous;
+                }
+                break;
+            }
+            case INTEGER: {
+                long previous = 0;
+                for (int row : shapeRows) {
+                    previous += BinaryLogFormat.unzigzag(BinaryLogFormat.readVarLong(block));
+                    rowValues[row][field] = previous;
+                }
+                break;
+            }
+            case BOOLEAN:
+                for (int row : shapeRows) {
+                    rowValues[row][field] = block.get() != 0;
+                }
+                break;
+            case STRING:
+                for (int row : shapeRows) {
+                    rowValues[row][field] = dictionary.get(BinaryLogFormat.readVarInt(block));
+                }
+                break;
+        }
+    }
+
+    private LineProtocolParser.Line toLine(Shape shape, long time, Object[] values) {
+        LineProtocolParser.Line line = new LineProtocolParser.Line(dictionary.get(shape.measurement));
+        for (int i = 0; i < shape.tagKeys.length; i++) {
+            line.tagKeys.add(dictionary.get(shape.tagKeys[i]));
+            line.tagValues.add(dictionary.get(shape.tagValues[i]));
+        }
+        for (int i = 0; i < shape.fieldKeys.length; i++) {
+            line.fieldKeys.add(dictionary.get(shape.fieldKeys[i]));
+            line.fieldTypes.add(shape.fieldTypes[i]);
+            line.fieldValues.add(values[i]);
+        }
+        if (shape.hasTime) {
+            line.time = time;
+        }
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Convert a binary log to a line protocol file, e.g. for uploading it
+     *
+     * @param binaryLog    the binary log to read
+     * @param lineProtocol the file to write the line protocol to, overwritten if it exists
+     * @return how many lines were converted
+     * @throws IOException if reading or writing failed
+     */
+    public static long convertToLineProtocol(@NonNull File binaryLog, @NonNull File lineProtocol) throws IOException {
+        try (BinaryLogReader reader = new BinaryLogReader(new BufferedInputStream(new FileInputStream(binaryLog)));
+             LineProtocolWriter writer = new LineProtocolWriter(new BufferedOutputStream(new FileOutputStream(lineProtocol)))) {
+            return reader.forEachLine(line -> writer.write(line.toPoint()));
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+
+import com.influxdb.client.write.Point;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolParser;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolParser.FieldType;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.BinaryLogFormat.Shape;
+
+/**
+ * Writes points in the compact binary format described in {@link BinaryLogFormat}, a fraction of
+ * the size of the same points as line protocol. {@link BinaryLogReader} turns them back into
+ * line protocol.
+ * <p>
+ * Lines are collected into blocks of up to {@link #MAX_ROWS_PER_BLOCK} rows, and a block is only
+ * written to the stream when it's full or on {@link #flush()}.
+ * <p>
+ * Not thread safe, all calls have to come from the same thread.
+ */
+public class BinaryLogWriter implements Closeable, Flushable {
+    private static final int MAX_ROWS_PER_BLOCK = 1024;
+
+    private final OutputStream out;
+
+    // dictionary and shapes of the whole file, and the entries not written yet
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> newStrings = new ArrayList<>();
+    private final Map<Shape, Integer> shapeIds = new HashMap<>();
+    private final List<Shape> shapes = new ArrayList<>();
+    private final List<Shape> newShapes = new ArrayList<>();
+
+    // rows of the current block; the field values of all rows are kept one after another in
+    // rowValues as longs: doubles as their bits, booleans as 0 or 1 and strings as their id
+    private final int[] rowShapes = new int[MAX_ROWS_PER_BLOCK];
+    private final long[] rowTimes = new long[MAX_ROWS_PER_BLOCK];
+    private final int[] rowValueStarts = new int[MAX_ROWS_PER_BLOCK];
+    private long[] rowValues = new long[MAX_ROWS_PER_BLOCK * 8];
+    private int rowValueCount = 0;
+    private int rows = 0;
+    // for writing a block: the rows grouped by shape, the shapes in the order they first appear
+    private final int[] groupedRows = new int[MAX_ROWS_PER_BLOCK];
+    private final int[] blockShapes = new int[MAX_ROWS_PER_BLOCK];
+    private final int[] blockShapeEnds = new int[MAX_ROWS_PER_BLOCK];
+    private int[] shapeSlots = new int[0];
+
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(64 * 1024);
+    private final CRC32 crc = new CRC32();
+    private long linesWritten = 0;
+    private long bytesWritten = 0;
+
+    /**
+     * Start a new binary log on the stream, by writing its header
+     *
+     * @param out the stream to write to, which is closed by {@link #close()}
+     * @throws IOException if writing the header failed
+     */
+    public BinaryLogWriter(@NonNull OutputStream out) throws IOException {
+        this.out = out;
+        out.write(BinaryLogFormat.MAGIC);
+        out.write(BinaryLogFormat.VERSION);
+        bytesWritten += BinaryLogFormat.MAGIC.length + 1;
+    }
+
+    /**
+     * Add the point to the log. Points without fields are skipped, as they have no line protocol either.
+     *
+     * @param point the point to add
+     * @throws IOException if writing a full block failed
+     */
+    public void write(@NonNull Point point) throws IOException {
+        String line = point.toLineProtocol();
+        if (!line.isEmpty()) {
+            writeLine(line);
+        }
+    }
+
+    /**
+     * Add one line of line protocol to the log
+     *
+     * @param line the line to add, without the trailing newline
+     * @throws IOException              if writing a full block failed
+     * @throws IllegalArgumentException if the line isn't valid line protocol
+     */
+    public void writeLine(@NonNull CharSequence line) throws IOException {
+        LineProtocolParser.Line parsed = LineProtocolParser.parse(line);
+
+        int tagCount = parsed.tagKeys.size();
+        int[] tagKeys = new int[tagCount];
+        int[] tagValues = new int[tagCount];
+        for (int i = 0; i < tagCount; i++) {
+            tagKeys[i] = stringId(parsed.tagKeys.get(i));
+            tagValues[i] = stringId(parsed.tagValues.get(i));
+        }
+        int fieldCount = parsed.fieldKeys.size();
+        int[] fieldKeys = new int[fieldCount];
+        FieldType[] fieldTypes = new FieldType[fieldCount];
+        if (rowValueCount + fieldCount > rowValues.length) {
+            rowValues = Arrays.copyOf(rowValues, Math.max(rowValues.length * 2, rowValueCount + fieldCount));
+        }
+        rowValueStarts[rows] = rowValueCount;
+        for (int i = 0; i < fieldCount; i++) {
+            fieldKeys[i] = stringId(parsed.fieldKeys.get(i));
+            fieldTypes[i] = parsed.fieldTypes.get(i);
+            Object value = parsed.fieldValues.get(i);
+            switch (fieldTypes[i]) {
+                case FLOAT:
+                    rowValues[rowValueCount++] = Double.doubleToRawLongBits((Double) value);
+                    break;
+                case INTEGER:
+                    rowValues[rowValueCount++] = (Long) value;
+                    break;
+                case BOOLEAN:
+                    rowValues[rowValueCount++] = (Boolean) value ? 1 : 0;
+                    break;
+                case STRING:
+                    rowValues[rowValueCount++] = stringId((String) value);
+                    break;
+            }
+        }
+        Shape shape = new Shape(stringId(parsed.measurement), parsed.time != null, tagKeys, tagValues, fieldKeys, fieldTypes);
+
+        Integer shapeId = shapeIds.get(shape);
+        if (shapeId == null) {
+            shapeId = shapes.size();
+            shapeIds.put(shape, shapeId);
+            shapes.add(shape);
+            newShapes.add(shape);
+        }
+
+        rowShapes[rows] = shapeId;
+        rowTimes[rows] = parsed.time != null ? parsed.time : 0;
+        rows++;
+        linesWritten++;
+        if (rows == MAX_ROWS_PER_BLOCK) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * @return how many lines were added so far, including the ones not written yet
+     */
+    public long getLinesWritten() {
+        return linesWritten;
+    }
+
+    /**
+     * @return how many bytes were written to the stream so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Write the current block, even if it's not full, and flush the stream
+     *
+     * @throws IOException if writing failed
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    /**
+     * Write the current block and close the stream
+     *
+     * @throws IOException if writing or closing failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+
+    private int stringId(String string) {
+        Integer id = dictionary.get(string);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(string, id);
+            newStrings.add(string);
+        }
+        return id;
+    }
+
+    private void writeBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        payload.reset();
+
+        BinaryLogFormat.writeVarLong(payload, newStrings.size());
+        for (String string : newStrings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            BinaryLogFormat.writeVarLong(payload, bytes.length);
+            payload.write(bytes, 0, bytes.length);
+        }
+        BinaryLogFormat.writeVarLong(payload, newShapes.size());
+        for (Shape shape : newShapes) {
+            shape.writeTo(payload);
+        }
+
+        // shape of every row, and which rows belong to which shape
+        BinaryLogFormat.writeVarLong(payload, rows);
+        int blockShapeCount = groupRowsByShape();
+        for (int row = 0; row < rows; row++) {
+            BinaryLogFormat.writeVarLong(payload, rowShapes[row]);
+        }
+
+        long previousTime = 0;
+        for (int row = 0; row < rows; row++) {
+            if (shapes.get(rowShapes[row]).hasTime) {
+                BinaryLogFormat.writeVarLong(payload, BinaryLogFormat.zigzag(rowTimes[row] - previousTime));
+                previousTime = rowTimes[row];
+            }
+        }
+
+        int from = 0;
+        for (int slot = 0; slot < blockShapeCount; slot++) {
+            Shape shape = shapes.get(blockShapes[slot]);
+            for (int field = 0; field < shape.fieldTypes.length; field++) {
+                writeColumn(shape.fieldTypes[field], field, from, blockShapeEnds[slot]);
+            }
+            from = blockShapeEnds[slot];
+        }
+
+        crc.reset();
+        byte[] bytes = payload.toByteArray();
+        crc.update(bytes, 0, bytes.length);
+        writeInt(bytes.length);
+        out.write(bytes);
+        writeInt((int) crc.getValue());
+        bytesWritten += bytes.length + 8;
+
+        newStrings.clear();
+        newShapes.clear();
+        rowValueCount = 0;
+        rows = 0;
+    }
+
+    /**
+     * Group the rows of the block by shape into {@link #groupedRows}, keeping their order within a shape
+     *
+     * @return how many shapes the block has; their ids are in {@link #blockShapes}, in the order they
+     * first appear, and their rows end at {@link #blockShapeEnds}
+     */
+    private int groupRowsByShape() {
+        if (shapeSlots.length < shapes.size()) {
+            int oldLength = shapeSlots.length;
+            shapeSlots = Arrays.copyOf(shapeSlots, Math.max(shapes.size(), oldLength * 2));
+            Arrays.fill(shapeSlots, oldLength, shapeSlots.length, -1);
+        }
+        // count the rows of every shape
+        int blockShapeCount = 0;
+        for (int row = 0; row < rows; row++) {
+            int slot = shapeSlots[rowShapes[row]];
+            if (slot < 0) {
+                slot = blockShapeCount++;
+                shapeSlots[rowShapes[row]] = slot;
+                blockShapes[slot] = rowShapes[row];
+                blockShapeEnds[slot] = 0;
+            }
+            blockShapeEnds[slot]++;
+        }
+        // turn the counts into where every group starts, and fill the groups; then they're the ends
+        int start = 0;
+        for (int slot = 0; slot < blockShapeCount; slot++) {
+            int count = blockShapeEnds[slot];
+            blockShapeEnds[slot] = start;
+            start += count;
+        }
+        for (int row = 0; row < rows; row++) {
+            groupedRows[blockShapeEnds[shapeSlots[rowShapes[row]]]++] = row;
+        }
+        for (int slot = 0; slot < blockShapeCount; slot++) {
+            shapeSlots[blockShapes[slot]] = -1;
+        }
+        return blockShapeCount;
+    }
+
+    private void writeColumn(FieldType type, int field, int from, int to) {
+        switch (type) {
+            case FLOAT: {
+                double previous = 0;
+                for (int i = from; i < to; i++) {
+                    int row = groupedRows[i];
+                    double value = Double.longBitsToDouble(rowValues[rowValueStarts[row] + field]);
+                    BinaryLogFormat.writeVarLong(payload, BinaryLogFormat.encodeDouble(value, previous));
+                    previous = value;
+                }
+                break;
+            }
+            case INTEGER: {
+                long previous = 0;
+                for (int i = from; i < to; i++) {
+                    int row = groupedRows[i];
+                    long value = rowValues[rowValueStarts[row] + field];
+                    BinaryLogFormat.writeVarLong(payload, BinaryLogFormat.zigzag(value - previous));
+                    previous = value;
+                }
+                break;
+            }
+            case BOOLEAN:
+                for (int i = from; i < to; i++) {
+                    int row = groupedRows[i];
+                    payload.write((int) rowValues[rowValueStarts[row] + field]);
+                }
+                break;
+            case STRING:
+                for (int i = from; i < to; i++) {
+                    int row = groupedRows[i];
+                    BinaryLogFormat.writeVarLong(payload, rowValues[rowValueStarts[row] + field]);
+                }
+                break;
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
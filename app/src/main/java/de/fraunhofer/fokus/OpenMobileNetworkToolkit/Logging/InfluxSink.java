@@ -0,0 +1,96 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Set;
+
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnection;
+
+/**
+ * Writes the points of every sample to an {@link InfluxdbConnection}. The sink owns the connection,
+ * and disconnects it when it's closed.
+ * <p>
+ * A sample counts as durable once its points are settled, see {@link InfluxdbConnection#getSettledPoints()}.
+ */
+public class InfluxSink implements LoggingSink {
+    public static final String REMOTE_NAME = "RemoteInflux";
+    // past this many writes the connection didn't settle, the oldest are forgotten and covered by later ones
+    private static final int MAX_MARKS = 4096;
+
+    private final String name;
+    private final InfluxdbConnection connection;
+    // only touched on the sink's thread
+    private long writes = 0;
+    // writes handed off to the connection, oldest first; guards durableWrites
+    private final ArrayDeque<Mark> marks = new ArrayDeque<>();
+    private long durableWrites = 0;
+
+    /**
+     * @param name       the name of the sink, e.g. {@link #REMOTE_NAME}
+     * @param connection the connection to write to, with its write API already opened
+     */
+    public InfluxSink(@NonNull String name, @NonNull InfluxdbConnection connection) {
+        this.name = name;
+        this.connection = connection;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @NonNull
+    @Override
+    public Set<Part> getRequiredParts() {
+        return EnumSet.of(Part.POINTS);
+    }
+
+    @Override
+    public void write(@NonNull LoggingSnapshot snapshot) throws IOException {
+        long write = ++writes;
+        // an empty sample still goes through the connection, so it's durable in order with the others
+        connection.writePoints(snapshot.getPoints(), settledAt -> {
+            synchronized (marks) {
+                if (marks.size() == MAX_MARKS) {
+                    marks.pollFirst();
+                }
+                marks.addLast(new Mark(write, settledAt));
+            }
+        });
+        if (!snapshot.getPoints().isEmpty()) {
+            connection.flush();
+        }
+    }
+
+    @Override
+    public long getDurableWrites() {
+        long settled = connection.getSettledPoints();
+        synchronized (marks) {
+            Mark mark;
+            while ((mark = marks.peekFirst()) != null && mark.settledAt <= settled) {
+                durableWrites = mark.write;
+                marks.pollFirst();
+            }
+            return durableWrites;
+        }
+    }
+
+    @Override
+    public void close() {
+        connection.disconnect();
+    }
+
+    private static final class Mark {
+        final long write;
+        final long settledAt;
+
+        Mark(long write, long settledAt) {
+            this.write = write;
+            this.settledAt = settledAt;
+        }
+    }
+}
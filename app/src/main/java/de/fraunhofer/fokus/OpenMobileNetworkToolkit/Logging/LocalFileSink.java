@@ -0,0 +1,79 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+
+import com.influxdb.client.write.Point;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Writes the points of every sample as influx line protocol to local log files, see
+ * {@link RotatingLogWriter} for how they're rotated and flushed. A sample counts as durable once
+ * the writer flushed all of its lines.
+ */
+public class LocalFileSink implements LoggingSink {
+    public static final String NAME = "LocalFile";
+    private static final String TAG = "LocalFileSink";
+
+    private final RotatingLogWriter writer;
+    // only touched on the sink's thread
+    private long writes = 0;
+    private final AtomicLong durableWrites = new AtomicLong(0);
+
+    /**
+     * @param directory the directory to put the log files into, which has to exist already
+     * @param policy    when to rotate, flush and fsync the log files
+     * @throws IOException if the first log file can't be created
+     */
+    public LocalFileSink(@NonNull File directory, @NonNull RotatingLogWriter.Policy policy) throws IOException {
+        writer = new RotatingLogWriter(directory, policy);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @NonNull
+    @Override
+    public Set<Part> getRequiredParts() {
+        return EnumSet.of(Part.POINTS);
+    }
+
+    @Override
+    public void write(@NonNull LoggingSnapshot snapshot) throws IOException {
+        long linesBefore = writer.getLines();
+        for (Point point : snapshot.getPoints()) {
+            writer.write(point);
+        }
+        writes++;
+        // the writer only flushes while writing a line, so check if it did while writing this sample
+        if (writer.getFlushedLines() == writer.getLines()) {
+            durableWrites.set(writes);
+        } else if (writer.getFlushedLines() >= linesBefore) {
+            durableWrites.set(writes - 1);
+        }
+    }
+
+    @Override
+    public long getDurableWrites() {
+        return durableWrites.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+            durableWrites.set(writes);
+        } catch (IOException e) {
+            CloudCityLogger.e(TAG, e.toString(), e);
+        }
+    }
+}
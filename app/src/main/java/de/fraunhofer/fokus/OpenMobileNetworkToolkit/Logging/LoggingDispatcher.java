@@ -0,0 +1,172 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Hands every {@link LoggingSnapshot} taken by the sampler to all registered {@link LoggingSink}s,
+ * each through its own {@link LoggingSinkQueue}.
+ * <p>
+ * Sinks can be added and removed at any time from any thread; {@link #dispatch(LoggingSnapshot)} never blocks.
+ * <p>
+ * With a {@link SampleRingBuffer} set, every sample is recorded in it before it's queued, and the
+ * samples every sink wrote durably (see {@link LoggingSink#getDurableWrites()}) are acknowledged, so
+ * the rest can be replayed after a crash.
+ */
+public class LoggingDispatcher {
+    private static final String TAG = "LoggingDispatcher";
+
+    private final Map<String, LoggingSinkQueue> queues = new ConcurrentHashMap<>();
+    private volatile Set<LoggingSink.Part> requiredParts = Collections.emptySet();
+    private volatile @Nullable SampleRingBuffer ringBuffer;
+
+    /**
+     * Register a sink. A sink already registered under the same name is closed and replaced.
+     *
+     * @param sink       the sink to register
+     * @param capacity   the most samples which can wait for the sink
+     * @param dropPolicy what to drop when the sink falls behind and its queue is full
+     */
+    public synchronized void addSink(@NonNull LoggingSink sink, int capacity, @NonNull LoggingSinkQueue.DropPolicy dropPolicy) {
+        CloudCityLogger.d(TAG, "addSink: " + sink.getName());
+        LoggingSinkQueue previous = queues.put(sink.getName(), new LoggingSinkQueue(sink, capacity, dropPolicy));
+        if (previous != null) {
+            previous.close();
+        }
+        updateRequiredParts();
+    }
+
+    /**
+     * Unregister a sink. Samples already queued for it are still written before it's closed.
+     *
+     * @param name the name of the sink
+     * @return the removed sink, or null if no sink with that name was registered
+     */
+    @Nullable
+    public synchronized LoggingSink removeSink(@NonNull String name) {
+        LoggingSinkQueue queue = queues.remove(name);
+        if (queue == null) {
+            CloudCityLogger.d(TAG, "removeSink: " + name + " wasn't registered");
+            return null;
+        }
+        CloudCityLogger.d(TAG, "removeSink: " + queue);
+        queue.close();
+        updateRequiredParts();
+        return queue.getSink();
+    }
+
+    public boolean hasSink(@NonNull String name) {
+        return queues.containsKey(name);
+    }
+
+    /**
+     * @return the union of the snapshot parts all registered sinks need; empty if there are no sinks
+     */
+    @NonNull
+    public Set<LoggingSink.Part> getRequiredParts() {
+        return requiredParts;
+    }
+
+    /**
+     * Record every dispatched sample in the ring buffer from now on
+     *
+     * @param ringBuffer the ring buffer, or null to stop recording
+     */
+    public void setRingBuffer(@Nullable SampleRingBuffer ringBuffer) {
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Queue the sample for every registered sink
+     *
+     * @param snapshot the sample to hand out
+     */
+    public void dispatch(@NonNull LoggingSnapshot snapshot) {
+        long sequence = record(snapshot);
+        for (LoggingSinkQueue queue : queues.values()) {
+            queue.offer(snapshot, sequence);
+        }
+    }
+
+    /**
+     * Queue a sample recovered from a {@link SampleRingBuffer} for every registered sink which writes
+     * points, as that's all a recovered sample has
+     *
+     * @param snapshot the recovered sample
+     */
+    public void replay(@NonNull LoggingSnapshot snapshot) {
+        long sequence = record(snapshot);
+        for (LoggingSinkQueue queue : queues.values()) {
+            if (queue.getSink().getRequiredParts().contains(LoggingSink.Part.POINTS)) {
+                queue.offer(snapshot, sequence);
+            }
+        }
+    }
+
+    private long record(LoggingSnapshot snapshot) {
+        SampleRingBuffer buffer = ringBuffer;
+        if (buffer == null) {
+            return LoggingSinkQueue.NO_SEQUENCE;
+        }
+        // everything before the oldest sample still queued or not yet durable in any sink is done
+        acknowledge(buffer);
+        long sequence = buffer.append(snapshot);
+        return sequence > 0 ? sequence : LoggingSinkQueue.NO_SEQUENCE;
+    }
+
+    private void acknowledge(SampleRingBuffer buffer) {
+        long oldestPending = Long.MAX_VALUE;
+        for (LoggingSinkQueue queue : queues.values()) {
+            oldestPending = Math.min(oldestPending, queue.getOldestPendingSequence());
+        }
+        buffer.acknowledge(oldestPending == Long.MAX_VALUE ? buffer.getLastSequence() : oldestPending - 1);
+    }
+
+    /**
+     * @return the queues of all registered sinks, e.g. for reading their counters
+     */
+    @NonNull
+    public Collection<LoggingSinkQueue> getQueues() {
+        return Collections.unmodifiableCollection(queues.values());
+    }
+
+    /**
+     * Close all sinks and wait for them to write what's still queued
+     *
+     * @param timeoutMillis the most time to wait for each sink, in milliseconds
+     */
+    public synchronized void shutdown(long timeoutMillis) {
+        CloudCityLogger.d(TAG, "shutdown");
+        for (LoggingSinkQueue queue : queues.values()) {
+            queue.close();
+        }
+        for (LoggingSinkQueue queue : queues.values()) {
+            queue.join(timeoutMillis);
+        }
+        SampleRingBuffer buffer = ringBuffer;
+        if (buffer != null) {
+            // samples a sink didn't get to in time, or didn't make durable before closing, stay
+            // unacknowledged, and are replayed on the next start
+            acknowledge(buffer);
+        }
+        queues.clear();
+        updateRequiredParts();
+    }
+
+    private void updateRequiredParts() {
+        Set<LoggingSink.Part> parts = EnumSet.noneOf(LoggingSink.Part.class);
+        for (LoggingSinkQueue queue : queues.values()) {
+            parts.addAll(queue.getSink().getRequiredParts());
+        }
+        requiredParts = Collections.unmodifiableSet(parts);
+    }
+}
@@ -0,0 +1,75 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+
+import java.util.Set;
+
+/**
+ * A logging target fed by the {@link de.fraunhofer.fokus.OpenMobileNetworkToolkit.LoggingService} sampler.
+ * <p>
+ * Every sink registered with a {@link LoggingDispatcher} gets its own thread and its own bounded queue,
+ * so {@link #write(LoggingSnapshot)} may block (e.g. on network I/O) without holding back the sampler
+ * or any of the other sinks.
+ */
+public interface LoggingSink {
+    /**
+     * Parts of a {@link LoggingSnapshot} a sink can ask the sampler for. The sampler only builds the
+     * parts at least one registered sink asked for.
+     */
+    enum Part {
+        /**
+         * {@link LoggingSnapshot#getPoints()}
+         */
+        POINTS,
+        /**
+         * {@link LoggingSnapshot#getCloudCityData()}
+         */
+        CLOUD_CITY_DATA,
+        /**
+         * {@link LoggingSnapshot#getNotificationText()}
+         */
+        NOTIFICATION_TEXT
+    }
+
+    /**
+     * @return the unique name of this sink, used for registering and in logs
+     */
+    @NonNull
+    String getName();
+
+    /**
+     * @return the parts of the {@link LoggingSnapshot} this sink needs
+     */
+    @NonNull
+    Set<Part> getRequiredParts();
+
+    /**
+     * Write one sample. Always called on the sink's own thread, never concurrently.
+     *
+     * @param snapshot the sample to write
+     * @throws Exception if writing failed; the sample is counted as failed and the sink keeps running
+     */
+    void write(@NonNull LoggingSnapshot snapshot) throws Exception;
+
+    /**
+     * How many of the samples written so far would survive the process getting killed, e.g. because
+     * they're in a file or the server accepted them. Counts the calls to {@link #write(LoggingSnapshot)}
+     * which returned normally, oldest first; a sample recorded in a {@link SampleRingBuffer} is only
+     * acknowledged once every sink counts it here.
+     * <p>
+     * May be called from any thread. The default is for sinks which don't hold on to anything, so a
+     * sample is durable as soon as its write returned.
+     *
+     * @return the number of durable writes, or {@link Long#MAX_VALUE} if every returned write is durable
+     */
+    default long getDurableWrites() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Release everything held by this sink. Called on the sink's own thread, after the last
+     * {@link #write(LoggingSnapshot)}.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,298 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cloudcity.util.CloudCityLogger;
+
+/**
+ * Runs one {@link LoggingSink} on its own {@link HandlerThread}, behind a bounded queue of
+ * {@link LoggingSnapshot}s.
+ * <p>
+ * {@link #offer(LoggingSnapshot)} never blocks. When the sink falls behind and the queue is full,
+ * the {@link DropPolicy} decides which sample gets dropped, and the drop is counted.
+ * <p>
+ * Samples recorded in a {@link SampleRingBuffer} stay pending after the sink wrote them, until it
+ * reports them as durable through {@link LoggingSink#getDurableWrites()}.
+ */
+public class LoggingSinkQueue {
+    private static final String TAG = "LoggingSinkQueue";
+
+    /**
+     * Sequence number of samples which weren't recorded in a {@link SampleRingBuffer}
+     */
+    public static final long NO_SEQUENCE = -1;
+
+    // more written samples than the ring buffer holds, so forgetting the oldest doesn't matter
+    private static final int MAX_UNDURABLE = 4096;
+
+    /**
+     * What to drop when a sample is offered to a full queue
+     */
+    public enum DropPolicy {
+        /**
+         * Drop the oldest queued sample to make room for the new one; keeps the freshest data
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the offered sample and keep what's already queued; keeps the series gap-free up to the point it fell behind
+         */
+        DROP_NEWEST
+    }
+
+    private final LoggingSink sink;
+    private final int capacity;
+    private final DropPolicy dropPolicy;
+
+    private final ArrayDeque<Entry> queue;
+    private final HandlerThread handlerThread;
+    private final Handler handler;
+    private boolean closed = false;
+    // sequence number of the sample the sink is writing right now, or NO_SEQUENCE
+    private long writing = NO_SEQUENCE;
+    // samples written but not durable yet, oldest first: their sequence numbers, and the count of
+    // writes the sink has to report as durable to cover them
+    private final long[] undurableSequences = new long[MAX_UNDURABLE];
+    private final long[] undurableWrites = new long[MAX_UNDURABLE];
+    private int undurableHead = 0;
+    private int undurableSize = 0;
+
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    // Write everything queued, one sample at a time, so offer() only holds the lock for a moment
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            Entry entry;
+            while ((entry = poll()) != null) {
+                long writes = 0;
+                try {
+                    sink.write(entry.snapshot);
+                    writes = written.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    CloudCityLogger.e(TAG, sink.getName() + ": exception " + e + " while writing " + entry.snapshot, e);
+                }
+                synchronized (queue) {
+                    writing = NO_SEQUENCE;
+                    // a failed sample is done, there's nothing more to wait for
+                    if (writes > 0 && entry.sequence != NO_SEQUENCE) {
+                        addUndurable(entry.sequence, writes);
+                    }
+                }
+            }
+        }
+    };
+
+    /**
+     * Create the queue and start the sink's thread
+     *
+     * @param sink       the sink to feed
+     * @param capacity   the most samples which can wait for the sink
+     * @param dropPolicy what to drop when the queue is full
+     */
+    public LoggingSinkQueue(@NonNull LoggingSink sink, int capacity, @NonNull DropPolicy dropPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+        }
+        this.sink = sink;
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+        this.queue = new ArrayDeque<>(capacity);
+
+        handlerThread = new HandlerThread("LoggingSink-" + sink.getName());
+        handlerThread.start();
+        handler = new Handler(Objects.requireNonNull(handlerThread.getLooper()));
+    }
+
+    public @NonNull LoggingSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Queue a sample for the sink, without blocking
+     *
+     * @param snapshot the sample to queue
+     * @return false if the offered sample was dropped, true otherwise
+     */
+    public boolean offer(@NonNull LoggingSnapshot snapshot) {
+        return offer(snapshot, NO_SEQUENCE);
+    }
+
+    /**
+     * Queue a sample recorded in a {@link SampleRingBuffer} for the sink, without blocking
+     *
+     * @param snapshot the sample to queue
+     * @param sequence the sequence number the ring buffer gave the sample, or {@link #NO_SEQUENCE}
+     * @return false if the offered sample was dropped, true otherwise
+     */
+    public boolean offer(@NonNull LoggingSnapshot snapshot, long sequence) {
+        boolean wasEmpty;
+        synchronized (queue) {
+            if (closed) {
+                return false;
+            }
+            if (queue.size() >= capacity) {
+                dropped.incrementAndGet();
+                if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                    return false;
+                }
+                queue.pollFirst();
+            }
+            wasEmpty = queue.isEmpty();
+            queue.addLast(new Entry(snapshot, sequence));
+        }
+        // The sink thread drains until the queue is empty, so only wake it up if it might've stopped
+        if (wasEmpty) {
+            handler.post(drain);
+        }
+        return true;
+    }
+
+    private Entry poll() {
+        synchronized (queue) {
+            Entry entry = queue.pollFirst();
+            writing = entry != null ? entry.sequence : NO_SEQUENCE;
+            return entry;
+        }
+    }
+
+    private void addUndurable(long sequence, long writes) {
+        if (undurableSize == MAX_UNDURABLE) {
+            undurableHead = (undurableHead + 1) % MAX_UNDURABLE;
+            undurableSize--;
+        }
+        int tail = (undurableHead + undurableSize) % MAX_UNDURABLE;
+        undurableSequences[tail] = sequence;
+        undurableWrites[tail] = writes;
+        undurableSize++;
+    }
+
+    /**
+     * @return the lowest sequence number of the samples queued, being written, or written but not yet
+     * durable, or {@link Long#MAX_VALUE} if none of them was recorded in a {@link SampleRingBuffer}
+     */
+    public long getOldestPendingSequence() {
+        long durable = sink.getDurableWrites();
+        synchronized (queue) {
+            while (undurableSize > 0 && undurableWrites[undurableHead] <= durable) {
+                undurableHead = (undurableHead + 1) % MAX_UNDURABLE;
+                undurableSize--;
+            }
+            // sequence numbers are written in ascending order, so these come before any being written or queued
+            if (undurableSize > 0) {
+                return undurableSequences[undurableHead];
+            }
+            long oldest = writing != NO_SEQUENCE ? writing : Long.MAX_VALUE;
+            for (Entry entry : queue) {
+                if (entry.sequence != NO_SEQUENCE) {
+                    // sequence numbers are queued in ascending order
+                    return Math.min(oldest, entry.sequence);
+                }
+            }
+            return oldest;
+        }
+    }
+
+    /**
+     * Stop taking new samples, write the ones already queued, then close the sink and quit its thread.
+     * Doesn't wait for any of that to happen, see {@link #join(long)}.
+     */
+    public void close() {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        handler.post(drain);
+        handler.post(() -> {
+            try {
+                sink.close();
+            } catch (Exception e) {
+                CloudCityLogger.e(TAG, sink.getName() + ": exception " + e + " while closing", e);
+            }
+            CloudCityLogger.d(TAG, sink.getName() + " closed; " + this);
+        });
+        handlerThread.quitSafely();
+    }
+
+    /**
+     * Wait for the sink's thread to finish after {@link #close()}
+     *
+     * @param timeoutMillis the most time to wait, in milliseconds
+     */
+    public void join(long timeoutMillis) {
+        try {
+            handlerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            CloudCityLogger.e(TAG, "Exception happened!! " + e, e);
+            Thread.currentThread().interrupt();
+        }
+        if (handlerThread.isAlive()) {
+            CloudCityLogger.w(TAG, sink.getName() + " didn't finish within " + timeoutMillis + "ms, " + getQueueDepth() + " samples still queued");
+        }
+    }
+
+    /**
+     * @return how many samples are waiting for the sink right now
+     */
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return how many samples the sink wrote successfully
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return how many samples the sink failed to write
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return how many samples were dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LoggingSinkQueue{" +
+                "sink=" + sink.getName() +
+                ", capacity=" + capacity +
+                ", dropPolicy=" + dropPolicy +
+                ", depth=" + getQueueDepth() +
+                ", written=" + written.get() +
+                ", failed=" + failed.get() +
+                ", dropped=" + dropped.get() +
+                '}';
+    }
+
+    private static final class Entry {
+        final LoggingSnapshot snapshot;
+        final long sequence;
+
+        Entry(LoggingSnapshot snapshot, long sequence) {
+            this.snapshot = snapshot;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.influxdb.client.write.Point;
+
+import java.util.Collections;
+import java.util.List;
+
+import cloudcity.networking.models.NetworkDataModel;
+
+/**
+ * One sample of the {@link de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.DataProvider} state,
+ * taken once per logging tick and handed to every enabled logging target.
+ * <p>
+ * The snapshot is never modified after it's built, so it can safely be read by several targets on
+ * different threads at the same time. Parts that no enabled target asked for are left empty (or null).
+ */
+public final class LoggingSnapshot {
+    private final long timestamp;
+    private final List<Point> points;
+    private final @Nullable NetworkDataModel cloudCityData;
+    private final @Nullable String notificationText;
+
+    public LoggingSnapshot(long timestamp,
+                           @NonNull List<Point> points,
+                           @Nullable NetworkDataModel cloudCityData,
+                           @Nullable String notificationText) {
+        this.timestamp = timestamp;
+        this.points = Collections.unmodifiableList(points);
+        this.cloudCityData = cloudCityData;
+        this.notificationText = notificationText;
+    }
+
+    /**
+     * @return the wall-clock time in milliseconds at which this sample was taken
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the influx points of this sample, already tagged and timestamped; never null
+     */
+    public @NonNull List<Point> getPoints() {
+        return points;
+    }
+
+    /**
+     * @return the Cloud City model of this sample, or null if Cloud City logging wasn't enabled or no data was available
+     */
+    public @Nullable NetworkDataModel getCloudCityData() {
+        return cloudCityData;
+    }
+
+    /**
+     * @return the text for the logging notification, or null if notification updates weren't enabled
+     */
+    public @Nullable String getNotificationText() {
+        return notificationText;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LoggingSnapshot{" +
+                "timestamp=" + timestamp +
+                ", points=" + points.size() +
+                ", cloudCityData=" + cloudCityData +
+                '}';
+    }
+}
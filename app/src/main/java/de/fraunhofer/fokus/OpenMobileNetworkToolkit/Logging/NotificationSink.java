@@ -0,0 +1,57 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import android.app.NotificationManager;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Shows the registered cell of every sample in the logging notification
+ */
+public class NotificationSink implements LoggingSink {
+    public static final String NAME = "Notification";
+
+    private final NotificationManager nm;
+    private final NotificationCompat.Builder builder;
+    private final int notificationId;
+
+    public NotificationSink(@NonNull NotificationManager nm, @NonNull NotificationCompat.Builder builder, int notificationId) {
+        this.nm = nm;
+        this.builder = builder;
+        this.notificationId = notificationId;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @NonNull
+    @Override
+    public Set<Part> getRequiredParts() {
+        return EnumSet.of(Part.NOTIFICATION_TEXT);
+    }
+
+    @Override
+    public void write(@NonNull LoggingSnapshot snapshot) {
+        String text = snapshot.getNotificationText();
+        if (text == null) {
+            return;
+        }
+        builder.setContentText(text);
+        nm.notify(notificationId, builder.build());
+    }
+
+    /**
+     * Clear the text again, runs after the last sample so it can't be set again
+     */
+    @Override
+    public void close() {
+        builder.setContentText(null);
+        nm.notify(notificationId, builder.build());
+    }
+}
@@ -0,0 +1,323 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import android.icu.text.SimpleDateFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+
+import com.influxdb.client.write.Point;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolWriter;
+
+/**
+ * Writes line protocol to a series of segment files in one directory, through a {@link FileChannel}.
+ * Lines are encoded straight into the {@link LineProtocolWriter}'s buffer, which is the only buffer
+ * between them and the channel.
+ * <p>
+ * A new segment is started when the current one gets bigger than {@link Policy#maxSegmentBytes} or
+ * older than {@link Policy#maxSegmentAgeMillis}, always between two lines. Closed segments are gzipped
+ * on a background thread if {@link Policy#compressClosedSegments} is set.
+ * <p>
+ * Buffered data is handed to the file system every {@link Policy#flushIntervalMillis}, which is enough
+ * to survive the process getting killed; surviving a power loss additionally needs
+ * {@link Policy#fsyncIntervalMillis}.
+ * <p>
+ * Not thread safe, all calls have to come from the same thread.
+ */
+public class RotatingLogWriter implements Closeable, Flushable {
+    private static final String TAG = "RotatingLogWriter";
+    private static final String EXTENSION = ".txt";
+    private static final String COMPRESSED_EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * When to rotate, flush and fsync
+     */
+    public static class Policy {
+        /**
+         * Start a new segment once the current one reached this many bytes
+         */
+        public final long maxSegmentBytes;
+        /**
+         * Start a new segment once the current one is this old; 0 to never rotate by age
+         */
+        public final long maxSegmentAgeMillis;
+        /**
+         * Hand buffered data to the file system at least this often
+         */
+        public final long flushIntervalMillis;
+        /**
+         * Force written data to the storage device at least this often; 0 to leave it to the file system
+         */
+        public final long fsyncIntervalMillis;
+        /**
+         * Gzip segments once they're closed
+         */
+        public final boolean compressClosedSegments;
+
+        public Policy(long maxSegmentBytes, long maxSegmentAgeMillis, long flushIntervalMillis,
+                      long fsyncIntervalMillis, boolean compressClosedSegments) {
+            if (maxSegmentBytes <= 0) {
+                throw new IllegalArgumentException("maxSegmentBytes must be positive, was " + maxSegmentBytes);
+            }
+            this.maxSegmentBytes = maxSegmentBytes;
+            this.maxSegmentAgeMillis = maxSegmentAgeMillis;
+            this.flushIntervalMillis = flushIntervalMillis;
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+            this.compressClosedSegments = compressClosedSegments;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Policy{" +
+                    "maxSegmentBytes=" + maxSegmentBytes +
+                    ", maxSegmentAgeMillis=" + maxSegmentAgeMillis +
+                    ", flushIntervalMillis=" + flushIntervalMillis +
+                    ", fsyncIntervalMillis=" + fsyncIntervalMillis +
+                    ", compressClosedSegments=" + compressClosedSegments +
+                    '}';
+        }
+    }
+
+    private final File directory;
+    private final Policy policy;
+    private final LineProtocolWriter lineWriter;
+
+    private FileChannel channel;
+    private File segment;
+    private long segmentBytes;
+    private long segmentOpenedAt;
+    private long lastFlush;
+    private long lastFsync;
+    private long lines = 0;
+    private long flushedLines = 0;
+    private boolean closed = false;
+
+    private HandlerThread compressorThread;
+    private Handler compressorHandler;
+
+    /**
+     * Open the first segment
+     *
+     * @param directory the directory to put the segments into, which has to exist already
+     * @param policy    when to rotate, flush and fsync
+     * @throws IOException if the first segment can't be created
+     */
+    public RotatingLogWriter(@NonNull File directory, @NonNull Policy policy) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.lineWriter = new LineProtocolWriter(new SegmentStream(), BUFFER_SIZE);
+        CloudCityLogger.d(TAG, "writing to " + directory + " with " + policy);
+        openSegment();
+    }
+
+    /**
+     * @return the segment currently written to
+     */
+    public @NonNull File getCurrentSegment() {
+        return segment;
+    }
+
+    /**
+     * Write the point as one line of line protocol
+     *
+     * @param point the point to write
+     * @throws IOException if writing failed
+     */
+    public void write(@NonNull Point point) throws IOException {
+        lineWriter.write(point);
+        afterLine();
+    }
+
+    /**
+     * Write an already encoded line, followed by a newline
+     *
+     * @param line the line to write, without the trailing newline
+     * @throws IOException if writing failed
+     */
+    public void writeLine(@NonNull CharSequence line) throws IOException {
+        lineWriter.writeLine(line);
+        afterLine();
+    }
+
+    /**
+     * @return how many lines were written, to all segments
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * @return how many of the {@link #getLines()} were handed to the file system, and forced to the
+     * storage device if the policy fsyncs
+     */
+    public long getFlushedLines() {
+        return flushedLines;
+    }
+
+    private void afterLine() throws IOException {
+        lines++;
+        long now = System.currentTimeMillis();
+        if (now - lastFlush >= policy.flushIntervalMillis) {
+            flush();
+        }
+        if (segmentBytes + lineWriter.getBufferedBytes() >= policy.maxSegmentBytes
+                || (policy.maxSegmentAgeMillis > 0 && now - segmentOpenedAt >= policy.maxSegmentAgeMillis)) {
+            rotate();
+        }
+    }
+
+    /**
+     * Hand everything buffered to the file system, and fsync if the policy asks for it
+     *
+     * @throws IOException if writing failed
+     */
+    @Override
+    public void flush() throws IOException {
+        lineWriter.flush();
+        long now = System.currentTimeMillis();
+        lastFlush = now;
+        if (policy.fsyncIntervalMillis <= 0) {
+            flushedLines = lines;
+        } else if (now - lastFsync >= policy.fsyncIntervalMillis) {
+            channel.force(false);
+            lastFsync = now;
+            flushedLines = lines;
+        }
+    }
+
+    /**
+     * Close the current segment and start a new one
+     *
+     * @throws IOException if closing or creating a segment failed
+     */
+    public void rotate() throws IOException {
+        closeSegment();
+        openSegment();
+    }
+
+    /**
+     * Close the current segment. Compression of closed segments still finishes in the background.
+     *
+     * @throws IOException if writing the last data failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeSegment();
+        } finally {
+            if (compressorThread != null) {
+                compressorThread.quitSafely();
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss", Locale.US);
+        String name = formatter.format(new Date());
+        File file = new File(directory, name + EXTENSION);
+        for (int i = 1; file.exists() || new File(directory, file.getName() + COMPRESSED_EXTENSION).exists(); i++) {
+            file = new File(directory, name + "_" + i + EXTENSION);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment = file;
+        segmentBytes = 0;
+        segmentOpenedAt = System.currentTimeMillis();
+        lastFlush = segmentOpenedAt;
+        lastFsync = segmentOpenedAt;
+        CloudCityLogger.d(TAG, "logfile: " + file);
+    }
+
+    private void closeSegment() throws IOException {
+        File closedSegment = segment;
+        try {
+            lineWriter.flush();
+            if (policy.fsyncIntervalMillis > 0) {
+                channel.force(false);
+            }
+            flushedLines = lines;
+        } finally {
+            channel.close();
+        }
+        if (policy.compressClosedSegments && segmentBytes > 0) {
+            compressInBackground(closedSegment);
+        }
+    }
+
+    private void compressInBackground(File file) {
+        if (compressorThread == null) {
+            compressorThread = new HandlerThread("LogCompressorThread");
+            compressorThread.start();
+            compressorHandler = new Handler(Objects.requireNonNull(compressorThread.getLooper()));
+        }
+        compressorHandler.post(() -> compress(file));
+    }
+
+    private static void compress(File file) {
+        File compressed = new File(file.getPath() + COMPRESSED_EXTENSION);
+        File tmp = new File(compressed.getPath() + ".tmp");
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), buffer.length)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            CloudCityLogger.e(TAG, "can't compress " + file + ", keeping it uncompressed", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(compressed)) {
+            CloudCityLogger.e(TAG, "can't rename " + tmp + " to " + compressed + ", keeping " + file + " uncompressed");
+            tmp.delete();
+            return;
+        }
+        if (!file.delete()) {
+            CloudCityLogger.w(TAG, "can't delete " + file + " after compressing it");
+        }
+        CloudCityLogger.d(TAG, "compressed " + file + " to " + compressed);
+    }
+
+    /**
+     * Stream between the {@link LineProtocolWriter} and the current segment's channel, writing the
+     * line writer's buffer to the channel without copying it into another one
+     */
+    private class SegmentStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(b, off, len);
+            while (bytes.hasRemaining()) {
+                segmentBytes += channel.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import androidx.annotation.NonNull;
+
+import com.influxdb.client.write.Point;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolParser;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolWriter;
+
+/**
+ * Keeps the points of the most recent samples in a fixed-size memory-mapped file, so samples which
+ * were taken but not yet durably written by every sink survive the process getting killed.
+ * <p>
+ * Appending a sample only writes to the mapping, without any system call; the kernel writes the
+ * pages back to the file on its own, also after the process died. Once the file is full, the oldest
+ * samples are overwritten. Every record carries a CRC, so a record half written when the process was
+ * killed is ignored on recovery.
+ * <p>
+ * Every sample gets a sequence number, and {@link #acknowledge(long)} marks all samples up to a
+ * sequence number as durably written by every sink. {@link #recover()} returns the samples after that.
+ * <p>
+ * Only the points of a sample are kept, as line protocol.
+ * <p>
+ * Thread safe.
+ */
+public class SampleRingBuffer implements Closeable {
+    private static final String TAG = "SampleRingBuffer";
+    private static final int MAGIC = 0x4F4D5242; // "OMRB"
+    private static final int VERSION = 1;
+
+    // header: magic, version, capacity, then head, tail, last sequence and acknowledged sequence
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_HEAD = 16;
+    private static final int HEADER_TAIL = 24;
+    private static final int HEADER_LAST_SEQUENCE = 32;
+    private static final int HEADER_ACKNOWLEDGED = 40;
+    private static final int HEADER_SIZE = 64;
+
+    // record: int payload length, int crc, long sequence, long timestamp, payload
+    private static final int RECORD_HEADER_SIZE = 24;
+    // marks that the rest of the data area up to its end is unused, and the next record is at its start
+    private static final int WRAP = -1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int capacity;
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(16 * 1024);
+    private final LineProtocolWriter payloadWriter = new LineProtocolWriter(payload);
+    private final CRC32 crc = new CRC32();
+
+    // head and tail only ever grow; the position in the data area is their remainder of capacity
+    private long head;
+    private long tail;
+    private long lastSequence;
+    private boolean closed = false;
+
+    /**
+     * Map the file, creating it if needed. An existing file of a different size or version is
+     * started over.
+     *
+     * @param file     the file to map
+     * @param capacity how many bytes of samples to keep, not counting the header
+     * @throws IOException if the file can't be created or mapped
+     */
+    public SampleRingBuffer(@NonNull File file, int capacity) throws IOException {
+        if (capacity < 4 * 1024) {
+            throw new IllegalArgumentException("capacity must be at least 4 KiB, was " + capacity);
+        }
+        this.capacity = capacity;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+
+        if (size == HEADER_SIZE + (long) capacity
+                && map.getInt(HEADER_MAGIC) == MAGIC
+                && map.getInt(HEADER_VERSION) == VERSION
+                && map.getInt(HEADER_CAPACITY) == capacity
+                && isConsistent(map.getLong(HEADER_HEAD), map.getLong(HEADER_TAIL))) {
+            head = map.getLong(HEADER_HEAD);
+            tail = map.getLong(HEADER_TAIL);
+            lastSequence = map.getLong(HEADER_LAST_SEQUENCE);
+            CloudCityLogger.d(TAG, "opened " + file + " with " + (head - tail) + " bytes of samples");
+        } else {
+            if (size != 0) {
+                CloudCityLogger.w(TAG, "starting " + file + " over, its header doesn't match");
+            }
+            map.putInt(HEADER_MAGIC, MAGIC);
+            map.putInt(HEADER_VERSION, VERSION);
+            map.putInt(HEADER_CAPACITY, capacity);
+            head = 0;
+            tail = 0;
+            lastSequence = 0;
+            map.putLong(HEADER_HEAD, 0);
+            map.putLong(HEADER_TAIL, 0);
+            map.putLong(HEADER_LAST_SEQUENCE, 0);
+            map.putLong(HEADER_ACKNOWLEDGED, 0);
+        }
+    }
+
+    private boolean isConsistent(long head, long tail) {
+        return tail >= 0 && head >= tail && head - tail <= capacity;
+    }
+
+    /**
+     * Record the points of a sample
+     *
+     * @param snapshot the sample to record
+     * @return the sequence number of the sample, or -1 if it has no points or is too big to keep
+     */
+    public synchronized long append(@NonNull LoggingSnapshot snapshot) {
+        if (closed || snapshot.getPoints().isEmpty()) {
+            return -1;
+        }
+        payload.reset();
+        try {
+            for (Point point : snapshot.getPoints()) {
+                payloadWriter.write(point);
+            }
+            payloadWriter.flush();
+        } catch (IOException e) {
+            // can't happen when writing to memory
+            CloudCityLogger.e(TAG, e.toString(), e);
+            return -1;
+        }
+        int length = payload.size();
+        int recordSize = RECORD_HEADER_SIZE + length;
+        if (recordSize > capacity / 2) {
+            CloudCityLogger.w(TAG, "not recording a sample of " + length + " bytes, it's too big");
+            return -1;
+        }
+
+        int position = (int) (head % capacity);
+        if (capacity - position < recordSize) {
+            int padding = capacity - position;
+            makeRoom(padding);
+            if (padding >= 4) {
+                map.putInt(HEADER_SIZE + position, WRAP);
+            }
+            head += padding;
+            position = 0;
+        }
+        makeRoom(recordSize);
+
+        long sequence = lastSequence + 1;
+        byte[] bytes = payload.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, length);
+        int offset = HEADER_SIZE + position;
+        map.putInt(offset, length);
+        map.putLong(offset + 8, sequence);
+        map.putLong(offset + 16, snapshot.getTimestamp());
+        map.position(offset + RECORD_HEADER_SIZE);
+        map.put(bytes, 0, length);
+        map.putInt(offset + 4, recordCrc(sequence, snapshot.getTimestamp()));
+
+        // publish the record only after it's complete
+        head += recordSize;
+        lastSequence = sequence;
+        map.putLong(HEADER_LAST_SEQUENCE, sequence);
+        map.putLong(HEADER_HEAD, head);
+        return sequence;
+    }
+
+    /**
+     * Mark all samples up to and including the sequence number as durably written by every sink
+     *
+     * @param sequence the sequence number of the last sample durably written by every sink
+     */
+    public synchronized void acknowledge(long sequence) {
+        if (closed) {
+            return;
+        }
+        if (sequence > map.getLong(HEADER_ACKNOWLEDGED)) {
+            map.putLong(HEADER_ACKNOWLEDGED, Math.min(sequence, lastSequence));
+        }
+    }
+
+    /**
+     * @return the sequence number of the last recorded sample, 0 if none was recorded yet
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Read the samples which weren't acknowledged, e.g. because the process was killed before every
+     * sink wrote them, and acknowledge them
+     *
+     * @return the samples, oldest first; they only have points
+     */
+    @NonNull
+    public synchronized List<LoggingSnapshot> recover() {
+        List<LoggingSnapshot> snapshots = new ArrayList<>();
+        long acknowledged = map.getLong(HEADER_ACKNOWLEDGED);
+        long position = tail;
+        while (position < head) {
+            int offset = (int) (position % capacity);
+            if (capacity - offset < 4 || map.getInt(HEADER_SIZE + offset) == WRAP) {
+                position += capacity - offset;
+                continue;
+            }
+            int length = map.getInt(HEADER_SIZE + offset);
+            if (length < 0 || RECORD_HEADER_SIZE + length > capacity - offset) {
+                CloudCityLogger.w(TAG, "invalid record length " + length + ", stopping recovery");
+                break;
+            }
+            long sequence = map.getLong(HEADER_SIZE + offset + 8);
+            long timestamp = map.getLong(HEADER_SIZE + offset + 16);
+            byte[] bytes = new byte[length];
+            map.position(HEADER_SIZE + offset + RECORD_HEADER_SIZE);
+            map.get(bytes);
+            crc.reset();
+            crc.update(bytes, 0, length);
+            if (recordCrc(sequence, timestamp) != map.getInt(HEADER_SIZE + offset + 4)) {
+                CloudCityLogger.w(TAG, "corrupt record " + sequence + ", stopping recovery");
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            if (sequence > acknowledged) {
+                LoggingSnapshot snapshot = decode(timestamp, bytes);
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+        }
+        CloudCityLogger.d(TAG, "recovered " + snapshots.size() + " samples after sequence " + acknowledged);
+        map.putLong(HEADER_ACKNOWLEDGED, lastSequence);
+        return snapshots;
+    }
+
+    /**
+     * Unmap the file. The kernel still writes the pages back after this, so there's no need to force them.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * Drop the oldest records until there's room for the given number of bytes
+     */
+    private void makeRoom(int bytes) {
+        boolean moved = false;
+        while (capacity - (head - tail) < bytes) {
+            int offset = (int) (tail % capacity);
+            int length = capacity - offset < 4 ? WRAP : map.getInt(HEADER_SIZE + offset);
+            if (length == WRAP) {
+                tail += capacity - offset;
+            } else {
+                tail += RECORD_HEADER_SIZE + length;
+            }
+            moved = true;
+        }
+        if (moved) {
+            // before the old records get overwritten, so recovery never reads half of one
+            map.putLong(HEADER_TAIL, tail);
+        }
+    }
+
+    /**
+     * CRC over sequence, timestamp and the payload already fed into {@link #crc}
+     */
+    private int recordCrc(long sequence, long timestamp) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (sequence >>> shift));
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (timestamp >>> shift));
+        }
+        return (int) crc.getValue();
+    }
+
+    private static LoggingSnapshot decode(long timestamp, byte[] bytes) {
+        List<Point> points = new ArrayList<>();
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            if (end > start) {
+                try {
+                    points.add(LineProtocolParser.parse(text.subSequence(start, end)).toPoint());
+                } catch (IllegalArgumentException e) {
+                    CloudCityLogger.w(TAG, "skipping unparsable line: " + e.getMessage());
+                }
+            }
+            start = end + 1;
+        }
+        return points.isEmpty() ? null : new LoggingSnapshot(timestamp, points, null, null);
+    }
+}
@@ -14,8 +14,8 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.graphics.Color;
-import android.icu.text.SimpleDateFormat;
 import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
@@ -31,126 +31,75 @@ import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import cloudcity.CloudCityConstants;
+import cloudcity.CloudCitySink;
 import cloudcity.LoggingServiceExtensions;
+import cloudcity.networking.models.NetworkDataModel;
 import cloudcity.util.CloudCityLogger;
+import cloudcity.util.FixedRateScheduler;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.CellInformations.CellInformation;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.DataProvider;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.WifiInformation;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnection;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnections;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.BinaryFileSink;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.InfluxSink;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LocalFileSink;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LoggingDispatcher;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LoggingSink;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LoggingSinkQueue;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.LoggingSnapshot;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.NotificationSink;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.RotatingLogWriter;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.SampleRingBuffer;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SPType;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SharedPreferencesGrouper;
 
 public class LoggingService extends Service {
     private static final String TAG = "Logging_Service";
+    // how many samples each logging target may fall behind before samples get dropped
+    private static final int LOCAL_FILE_QUEUE_CAPACITY = 600;
+    private static final int REMOTE_INFLUX_QUEUE_CAPACITY = 300;
+    private static final int CLOUD_CITY_QUEUE_CAPACITY = 60;
+    private static final int NOTIFICATION_QUEUE_CAPACITY = 1;
+    private static final long SINK_SHUTDOWN_TIMEOUT_MS = 5000;
+    // hand the local log file to the file system in big writes instead of about one per sample; what a killed
+    // process didn't flush yet is still in the sample ring buffer, and replayed on the next start
+    private static final long LOCAL_FILE_FLUSH_INTERVAL_MS = 30 * 1000;
+    // fsync is only checked on a flush, so with it on every flush forces the file too
+    private static final long LOCAL_FILE_FSYNC_INTERVAL_MS = LOCAL_FILE_FLUSH_INTERVAL_MS;
+    private static final String SAMPLE_RING_BUFFER_FILE = "sample_ring_buffer.bin";
+    private static final int SAMPLE_RING_BUFFER_BYTES = 4 * 1024 * 1024;
     public NotificationManager nm;
     NotificationCompat.Builder builder;
     InfluxdbConnection ic; // remote influxDB
     InfluxdbConnection lic; // local influxDB
     DataProvider dp;
     SharedPreferencesGrouper spg;
-    private Handler notificationHandler;
-    private HandlerThread notificationHandlerThread;
-    private Handler remoteInfluxHandler;
-    private HandlerThread remoteInfluxHandlerThread;
-    private Handler localInfluxHandler;
-    private HandlerThread localInfluxHandlerThread;
-    private Handler localFileHandler;
-    private HandlerThread localFileHandlerThread;
-    private List<Point> logFilePoints;
-    private FileOutputStream stream;
+    private Handler samplerHandler;
+    private HandlerThread samplerHandlerThread;
+    private FixedRateScheduler samplerScheduler;
+    // every logging target is fed on its own thread, so a slow target can't delay the sampler or the other targets
+    private final LoggingDispatcher dispatcher = new LoggingDispatcher();
+    // the most recent samples, kept until every logging target wrote them, so they survive the process getting killed
+    private SampleRingBuffer sampleRingBuffer;
     private int interval;
     GlobalVars gv;
-    // Handle local on-device logging to logfile
-    private final Runnable localFileUpdate = new Runnable() {
-        @Override
-        public void run() {
-            logFilePoints.addAll(getPoints());
-            if (logFilePoints.size() >= 100) {
-                for (Point point : logFilePoints) {
-                    try {
-                        stream.write((point.toLineProtocol() + "\n").getBytes());
-                    } catch (IOException e) {
-                        CloudCityLogger.e(TAG,e.toString(), e);
-                    }
-                }
-                logFilePoints.clear();
-                try {
-                    stream.flush();
-                } catch (IOException e) {
-                    CloudCityLogger.e(TAG,e.toString(), e);
-                }
-            }
-            localFileHandler.postDelayed(this, interval);
-        }
-    };
-    // Handle notification bar update
-    private final Runnable notification_updater = new Runnable() {
-        @SuppressLint("ObsoleteSdkInt")
-        @Override
-        public void run() {
-            if(dp == null) {
-                CloudCityLogger.e(TAG, "run: Data provider is null!");
-                return;
-            }
-            StringBuilder s = dp.getRegisteredCells().get(0).getStringBuilder();
-            builder.setContentText(s);
-            nm.notify(1, builder.build());
-            notificationHandler.postDelayed(this, interval);
-        }
-    };
-
-    // Handle local on-device influxDB
-    private final Runnable localInfluxUpdate = () -> {
-/*            gv.getLog_status().setColorFilter(Color.argb(255, 255, 0, 0));
-            //long ts = System.currentTimeMillis();
-            // write network information
-            if (spg.getSharedPreference(SPType.logging_sp).getBoolean("influx_network_data", false)) {
-                return;
-            }
-            // write signal strength information
-            if (spg.getSharedPreference(SPType.logging_sp).getBoolean("influx_signal_data", false)) { // user settings here
-                return;
-            }
-            // write cell information
-            if (spg.getSharedPreference(SPType.logging_sp).getBoolean("influx_cell_data", false)) {
-
-            }
-            //always add location information
-                try {
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                        ic.writePoints(new ArrayList<>(Collections.singleton(dp.getLocationPoint())));
-                    }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-
-            remoteInfluxHandler.postDelayed(this, interval);*/
-    };
 
-    // Handle remote on-server influxdb update
-    private final Runnable RemoteInfluxUpdate = new Runnable() {
-        @Override
-        public void run() {
-            try {
-                ic.writePoints(getPoints());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            ic.flush();
-            remoteInfluxHandler.postDelayed(this, interval);
+    // Take one sample per interval and hand it to every registered logging target
+    private final Runnable samplerUpdate = () -> {
+        LoggingSnapshot snapshot = takeSnapshot();
+        if (snapshot != null) {
+            dispatcher.dispatch(snapshot);
         }
     };
 
@@ -212,10 +161,17 @@ public class LoggingService extends Service {
                         Toast.makeText(getApplicationContext(), "Please fill all Cloud City Settings", Toast.LENGTH_LONG).show();
                         prefs.edit().putBoolean("enable_cloud_city", false).apply();
                     } else {
-                        LoggingServiceExtensions.setupCloudCity(gv, interval, dp, spg);
+                        setupCloudCity();
                     }
                 } else {
-                    LoggingServiceExtensions.stopCloudCity();
+                    stopCloudCity();
+                }
+            } else if (Objects.equals(key, CloudCityConstants.CLOUD_CITY_BATCH_EVENTS)
+                    || Objects.equals(key, CloudCityConstants.CLOUD_CITY_BATCH_SECONDS)
+                    || Objects.equals(key, CloudCityConstants.CLOUD_CITY_GZIP)) {
+                // the sink reads the batch and compression settings when it's created
+                if (dispatcher.hasSink(CloudCitySink.NAME)) {
+                    setupCloudCity();
                 }
             } else if (Objects.equals(key, "enable_notification_update")) {
                 if (prefs.getBoolean(key, false)) {
@@ -229,6 +185,12 @@ public class LoggingService extends Service {
                 } else {
                     stopLocalFile();
                 }
+            } else if (Objects.equals(key, "enable_local_binary_log")) {
+                if (prefs.getBoolean(key, false)) {
+                    setupLocalBinaryFile();
+                } else {
+                    stopLocalBinaryFile();
+                }
             } else if (Objects.equals(key, "enable_local_influx_log")) {
                 if (prefs.getBoolean(key, false)) {
                     setupLocalInfluxDB();
@@ -237,6 +199,10 @@ public class LoggingService extends Service {
                 }
             } else if (Objects.equals(key, "logging_interval")) {
                 interval = Integer.parseInt(spg.getSharedPreference(SPType.logging_sp).getString("logging_interval", "1000"));
+                FixedRateScheduler scheduler = samplerScheduler;
+                if (scheduler != null) {
+                    scheduler.setPeriod(interval);
+                }
             }
         }, SPType.logging_sp);
 
@@ -252,16 +218,23 @@ public class LoggingService extends Service {
         }
 
         if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_cloud_city", false)) {
-            LoggingServiceExtensions.setupCloudCity(gv, interval, dp, spg);
+            setupCloudCity();
         }
 
         if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_local_file_log", false)) {
             setupLocalFile();
         }
 
+        if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_local_binary_log", false)) {
+            setupLocalBinaryFile();
+        }
+
         if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_local_influx_log", false)) {
             setupLocalFile();
         }
+
+        // and finally start the one clock which samples for all of the logging targets above
+        startSampler();
         return START_STICKY;
     }
 
@@ -274,24 +247,72 @@ public class LoggingService extends Service {
         }
 
         if (spg.getSharedPreference(SPType.default_sp).getBoolean("enable_cloud_city", false)){
-            LoggingServiceExtensions.stopCloudCity();
+            stopCloudCity();
         }
 
         if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_local_file_log", false)) {
             stopLocalFile();
         }
+        if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_local_binary_log", false)) {
+            stopLocalBinaryFile();
+        }
         if (spg.getSharedPreference(SPType.logging_sp).getBoolean("enable_local_influx_log", false)) {
             stopLocalInfluxDB();
         }
 
+        stopSampler();
+
         // Stop foreground service and remove the notification.
         stopForeground(STOP_FOREGROUND_DETACH);
         // Stop the foreground service.
         stopSelf();
     }
 
-    private ArrayList<Point> getPoints() {
+    /**
+     * Read the {@link DataProvider} once for all registered logging targets
+     *
+     * @return the sample, or null if no logging target is registered
+     */
+    @Nullable
+    private LoggingSnapshot takeSnapshot() {
+        Set<LoggingSink.Part> parts = dispatcher.getRequiredParts();
+        if (parts.isEmpty()) {
+            return null;
+        }
         long time = System.currentTimeMillis();
+
+        List<Point> points = new ArrayList<>();
+        if (parts.contains(LoggingSink.Part.POINTS)) {
+            points = getPoints(time);
+        }
+
+        NetworkDataModel cloudCityData = null;
+        if (parts.contains(LoggingSink.Part.CLOUD_CITY_DATA)) {
+            cloudCityData = LoggingServiceExtensions.getCloudCityData();
+        }
+
+        String notificationText = null;
+        if (parts.contains(LoggingSink.Part.NOTIFICATION_TEXT)) {
+            notificationText = getNotificationText();
+        }
+
+        return new LoggingSnapshot(time, points, cloudCityData, notificationText);
+    }
+
+    @Nullable
+    private String getNotificationText() {
+        if (dp == null) {
+            CloudCityLogger.e(TAG, "getNotificationText: Data provider is null!");
+            return null;
+        }
+        List<CellInformation> registeredCells = dp.getRegisteredCells();
+        if (registeredCells.isEmpty()) {
+            return null;
+        }
+        return registeredCells.get(0).getStringBuilder().toString();
+    }
+
+    private ArrayList<Point> getPoints(long time) {
         ArrayList<Point> logPoints = new ArrayList<>();
         if (dp != null) {
             Map<String, String> tags_map = dp.getTagsMap();
@@ -386,127 +407,108 @@ public class LoggingService extends Service {
         return logPoints;
     }
 
+    private static long parseLongSetting(SharedPreferences sp, String key, long fallback) {
+        String value = sp.getString(key, String.valueOf(fallback));
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            CloudCityLogger.w(TAG, "invalid " + key + " setting " + value + ", using " + fallback);
+            return fallback;
+        }
+    }
+
     private void setupLocalFile() {
         CloudCityLogger.d(TAG, "setupLocalFile");
-        logFilePoints = new ArrayList<>();
-
         // build log file path
-        String path = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS).getAbsolutePath() + "/omnt/log/";
+        String path = getLocalLogDirectory().getAbsolutePath() + "/";
         try {
             Files.createDirectories(Paths.get(path));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
-        // create the log file
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss", Locale.US);
-        Date now = new Date();
-        String filename = path + formatter.format(now) + ".txt";
-        CloudCityLogger.d(TAG, "logfile: " + filename);
-        File logfile = new File(filename);
+        // the sink creates the log files itself, a new one whenever the current one gets too big or too old
+        SharedPreferences loggingSp = spg.getSharedPreference(SPType.logging_sp);
+        RotatingLogWriter.Policy policy = new RotatingLogWriter.Policy(
+                Math.max(1, parseLongSetting(loggingSp, "local_file_max_size_mb", 16)) * 1024 * 1024,
+                Math.max(0, parseLongSetting(loggingSp, "local_file_max_age_min", 60)) * 60 * 1000,
+                LOCAL_FILE_FLUSH_INTERVAL_MS,
+                loggingSp.getBoolean("local_file_fsync", false) ? LOCAL_FILE_FSYNC_INTERVAL_MS : 0,
+                loggingSp.getBoolean("local_file_compress", true));
         try {
-            boolean file_not_exists = logfile.createNewFile();
-            if (!file_not_exists) {
-                logfile = new File(filename + "_1");
-                file_not_exists = logfile.createNewFile();
-            }
-            if (!file_not_exists) {
-                CloudCityLogger.d(TAG, "can't create logfile " + logfile + " event after file rename");
-            }
+            dispatcher.addSink(new LocalFileSink(new File(path), policy), LOCAL_FILE_QUEUE_CAPACITY, LoggingSinkQueue.DropPolicy.DROP_OLDEST);
         } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        // get an output stream
-        try {
-            stream = new FileOutputStream(logfile);
-        } catch (FileNotFoundException e) {
             Toast.makeText(getApplicationContext(), "logfile not created", Toast.LENGTH_SHORT).show();
             CloudCityLogger.e(TAG,e.toString(), e);
         }
-
-        initLocalFileHandlerAndItsThread();
     }
 
     private void stopLocalFile() {
         CloudCityLogger.d(TAG, "stopLocalFile");
-        if (localFileHandler != null) {
-            try {
-                stream.close();
-                localFileHandler.removeCallbacks(localFileUpdate);
-            } catch (java.lang.NullPointerException e) {
-                CloudCityLogger.e(TAG, "trying to stop local file service while it was not running", e);
-            } catch (IOException e) {
-                CloudCityLogger.e(TAG,e.toString(), e);
-            }
+        // the sink writes what's still queued and then closes the file on its own thread
+        if (dispatcher.removeSink(LocalFileSink.NAME) == null) {
+            CloudCityLogger.e(TAG, "trying to stop local file service while it was not running");
         }
+    }
 
-        if (localFileHandlerThread != null) {
-            localFileHandlerThread.quitSafely();
-            try {
-                localFileHandlerThread.join();
-            } catch (InterruptedException e) {
-                CloudCityLogger.e(TAG, "Exception happened!! "+e, e);
-            }
+    private void setupLocalBinaryFile() {
+        CloudCityLogger.d(TAG, "setupLocalBinaryFile");
+        File directory = getLocalLogDirectory();
+        try {
+            Files.createDirectories(directory.toPath());
+            dispatcher.addSink(new BinaryFileSink(directory), LOCAL_FILE_QUEUE_CAPACITY, LoggingSinkQueue.DropPolicy.DROP_OLDEST);
+        } catch (IOException e) {
+            Toast.makeText(getApplicationContext(), "binary logfile not created", Toast.LENGTH_SHORT).show();
+            CloudCityLogger.e(TAG, e.toString(), e);
+        }
+    }
+
+    /**
+     * @return the directory the local log files, text and binary, are written to
+     */
+    public static File getLocalLogDirectory() {
+        return new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS), "omnt/log");
+    }
+
+    private void stopLocalBinaryFile() {
+        CloudCityLogger.d(TAG, "stopLocalBinaryFile");
+        if (dispatcher.removeSink(BinaryFileSink.NAME) == null) {
+            CloudCityLogger.e(TAG, "trying to stop local binary file service while it was not running");
         }
     }
 
     private void setupNotificationUpdate() {
         CloudCityLogger.d(TAG, "setupNotificationUpdate");
-        notificationHandlerThread = new HandlerThread("NotificationHandlerThread");
-        notificationHandlerThread.start();
-        notificationHandler = new Handler(Objects.requireNonNull(notificationHandlerThread.getLooper()));
-        notificationHandler.post(notification_updater);
+        dispatcher.addSink(new NotificationSink(nm, builder, 1), NOTIFICATION_QUEUE_CAPACITY, LoggingSinkQueue.DropPolicy.DROP_OLDEST);
     }
 
     private void stopNotificationUpdate() {
         CloudCityLogger.d(TAG, "stopNotificationUpdate");
-        notificationHandler.removeCallbacks(notification_updater);
-        builder.setContentText(null);
-        nm.notify(1, builder.build());
+        // the sink clears the text after its last sample, so a queued sample can't set it again
+        dispatcher.removeSink(NotificationSink.NAME);
+    }
 
-        if (notificationHandlerThread != null) {
-            notificationHandlerThread.quitSafely();
-            try {
-                notificationHandlerThread.join();
-            } catch (InterruptedException e) {
-                CloudCityLogger.e(TAG, "Exception happened!! "+e, e);
-            }
-            notificationHandlerThread = null;
-        }
+    private void setupCloudCity() {
+        LoggingSink sink = LoggingServiceExtensions.setupCloudCity(getApplicationContext(), gv, dp);
+        dispatcher.addSink(sink, CLOUD_CITY_QUEUE_CAPACITY, LoggingSinkQueue.DropPolicy.DROP_OLDEST);
+    }
+
+    private void stopCloudCity() {
+        dispatcher.removeSink(CloudCitySink.NAME);
+        LoggingServiceExtensions.stopCloudCity();
     }
 
     private void setupLocalInfluxDB() {
         CloudCityLogger.d(TAG, "setupLocalInfluxDB");
         lic = InfluxdbConnections.getLicInstance(getApplicationContext());
         Objects.requireNonNull(lic).open_write_api();
-        localInfluxHandlerThread = new HandlerThread("LocalInfluxHandlerThread");
-        localInfluxHandlerThread.start();
-        localInfluxHandler = new Handler(Objects.requireNonNull(localFileHandlerThread.getLooper()));
-        localInfluxHandler.post(localInfluxUpdate);
     }
 
     private void stopLocalInfluxDB() {
         CloudCityLogger.d(TAG, "stopLocalInfluxDB");
-        if (localInfluxHandler != null) {
-            try {
-                localInfluxHandler.removeCallbacks(RemoteInfluxUpdate);
-            } catch (java.lang.NullPointerException e) {
-                CloudCityLogger.e(TAG, "trying to stop local influx service while it was not running", e);
-            }
-        }
         if (lic != null) {
             lic.disconnect();
         }
-        if (localInfluxHandlerThread != null) {
-            localInfluxHandlerThread.quitSafely();
-            try {
-                localInfluxHandlerThread.join();
-            } catch (InterruptedException e) {
-                CloudCityLogger.e(TAG, "Exception happened!! "+e, e);
-            }
-            localInfluxHandlerThread = null;
-        }
     }
 
     /**
@@ -516,10 +518,8 @@ public class LoggingService extends Service {
         CloudCityLogger.d(TAG, "setupRemoteInfluxDB");
         ic = InfluxdbConnections.getRicInstance(getApplicationContext());
         Objects.requireNonNull(ic).open_write_api();
-        remoteInfluxHandlerThread = new HandlerThread("RemoteInfluxHandlerThread");
-        remoteInfluxHandlerThread.start();
-        remoteInfluxHandler = new Handler(Objects.requireNonNull(remoteInfluxHandlerThread.getLooper()));
-        remoteInfluxHandler.post(RemoteInfluxUpdate);
+        // the sink owns the connection from here on, and disconnects it when it's removed
+        dispatcher.addSink(new InfluxSink(InfluxSink.REMOTE_NAME, ic), REMOTE_INFLUX_QUEUE_CAPACITY, LoggingSinkQueue.DropPolicy.DROP_OLDEST);
         ImageView log_status = gv.getLog_status();
         if (log_status != null) {
             gv.getLog_status().setColorFilter(Color.argb(255, 255, 0, 0));
@@ -531,34 +531,88 @@ public class LoggingService extends Service {
      */
     private void stopRemoteInfluxDB() {
         CloudCityLogger.d(TAG, "stopRemoteInfluxDB");
-        // cleanup the handler is existing
-        if (remoteInfluxHandler != null) {
-            try {
-                remoteInfluxHandler.removeCallbacks(RemoteInfluxUpdate);
-            } catch (java.lang.NullPointerException e) {
-                CloudCityLogger.d(TAG, "trying to stop remote influx service while it was not running");
-            }
+        // the sink writes what's still queued and then disconnects the influx connection
+        dispatcher.removeSink(InfluxSink.REMOTE_NAME);
+        ic = null;
+
+        // remove reference in connection manager
+        InfluxdbConnections.removeRicInstance();
+        gv.getLog_status().setColorFilter(Color.argb(255, 192, 192, 192));
+    }
+
+    /**
+     * Start the sampler thread, which takes one sample per logging interval, aligned to the wall clock,
+     * and hands it to every registered logging target
+     */
+    private void startSampler() {
+        if (samplerHandlerThread != null) {
+            return;
+        }
+        CloudCityLogger.d(TAG, "startSampler");
+        samplerHandlerThread = new HandlerThread("LoggingSamplerThread");
+        samplerHandlerThread.start();
+        samplerHandler = new Handler(Objects.requireNonNull(samplerHandlerThread.getLooper()));
+        // replay what the last run didn't get to write before the first new sample is taken
+        samplerHandler.post(this::openSampleRingBuffer);
+        samplerScheduler = new FixedRateScheduler("LoggingSampler", samplerHandler, interval, true, samplerUpdate);
+        samplerScheduler.start();
+    }
+
+    /**
+     * Stop the sampler, then close all logging targets after they wrote everything already handed to them
+     */
+    private void stopSampler() {
+        CloudCityLogger.d(TAG, "stopSampler");
+        if (samplerScheduler != null) {
+            samplerScheduler.stop();
+            CloudCityLogger.d(TAG, "sampler ran " + samplerScheduler.getTicks() + " ticks, missed " + samplerScheduler.getMissedTicks());
+            samplerScheduler = null;
         }
 
-        if (remoteInfluxHandlerThread != null) {
-            remoteInfluxHandlerThread.quitSafely();
+        // the sampler goes first, so it can't hand anything to a target after that one was closed
+        if (samplerHandlerThread != null) {
+            samplerHandlerThread.quitSafely();
             try {
-                remoteInfluxHandlerThread.join();
+                samplerHandlerThread.join();
             } catch (InterruptedException e) {
                 CloudCityLogger.e(TAG, "Exception happened!! "+e, e);
             }
-            remoteInfluxHandlerThread = null;
+            samplerHandlerThread = null;
+            samplerHandler = null;
         }
+        dispatcher.shutdown(SINK_SHUTDOWN_TIMEOUT_MS);
+        closeSampleRingBuffer();
+    }
 
-        // close disconnect influx connection if existing
-        if (ic != null) {
-            ic.disconnect();
-            ic = null;
+    /**
+     * Open the sample ring buffer and replay the samples which weren't written by every logging target
+     * the last time, e.g. because the process was killed
+     */
+    private void openSampleRingBuffer() {
+        try {
+            sampleRingBuffer = new SampleRingBuffer(new File(getFilesDir(), SAMPLE_RING_BUFFER_FILE), SAMPLE_RING_BUFFER_BYTES);
+        } catch (IOException e) {
+            CloudCityLogger.e(TAG, "can't open sample ring buffer, samples won't survive a crash", e);
+            return;
         }
+        List<LoggingSnapshot> recovered = sampleRingBuffer.recover();
+        dispatcher.setRingBuffer(sampleRingBuffer);
+        for (LoggingSnapshot snapshot : recovered) {
+            dispatcher.replay(snapshot);
+        }
+    }
 
-        // remove reference in connection manager
-        InfluxdbConnections.removeRicInstance();
-        gv.getLog_status().setColorFilter(Color.argb(255, 192, 192, 192));
+    private void closeSampleRingBuffer() {
+        dispatcher.setRingBuffer(null);
+        if (sampleRingBuffer == null) {
+            return;
+        }
+        try {
+            sampleRingBuffer.close();
+        } catch (IOException e) {
+            CloudCityLogger.e(TAG, e.toString(), e);
+        }
+        sampleRingBuffer = null;
     }
 
     @Nullable
@@ -566,11 +620,4 @@ public class LoggingService extends Service {
     public IBinder onBind(Intent intent) {
         return null;
     }
-
-    private void initLocalFileHandlerAndItsThread() {
-        localFileHandlerThread = new HandlerThread("LocalFileHandlerThread");
-        localFileHandlerThread.start();
-        localFileHandler = new Handler(Objects.requireNonNull(localFileHandlerThread.getLooper()));
-        localFileHandler.post(localFileUpdate);
-    }
 }
@@ -7,12 +7,14 @@ import android.view.Gravity;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import java.util.ArrayList;
 import java.util.Locale;
-import java.util.OptionalDouble;
 
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.R;
 
+/**
+ * Shows the {@link RunningStats} of a metric as a row of tiles. Code without a UI uses
+ * {@link RunningStats} directly.
+ */
 public class Metric {
         private LinearLayout mean;
         private LinearLayout median;
@@ -20,7 +22,7 @@ public class Metric {
         private LinearLayout min;
         private LinearLayout last;
         private TextView directionName;
-        private ArrayList<Double> meanList = new ArrayList<>();
+        private final RunningStats stats = new RunningStats();
         private double maxValueSum = Double.MIN_VALUE;
         private double minValueSum = Double.MAX_VALUE;
         private final METRIC_TYPE metricType;
@@ -136,51 +138,32 @@ public class Metric {
         }
 
         public double calcMean(){
-            if (!meanList.isEmpty()) {
-                return meanList.stream().mapToDouble(a -> a).sum() / meanList.size();
-            } else {
-                return 0;
-            }
+            return stats.getMean();
         }
 
         public double calcMedian(){
-            this.getMeanList().sort(Double::compareTo);
-            if (!meanList.isEmpty()) {
-                return meanList.get(Math.round(meanList.size() / 2));
-            } else {
-                return 0;
-            }
+            return stats.getMedian();
         }
 
         public double calcMax(){
-            OptionalDouble potentialMax = meanList.stream().mapToDouble(a -> a).max();
-            if (potentialMax.isPresent()) {
-                return potentialMax.getAsDouble();
-            } else {
-                return 0;
-            }
+            return stats.getMax();
         }
 
         public double calcMin(){
-            OptionalDouble potentialMin = meanList.stream().mapToDouble(a -> a).min();
-            if (potentialMin.isPresent()) {
-                return potentialMin.getAsDouble();
-            } else {
-                return 0;
-            }
+            return stats.getMin();
         }
         public void update(Double value){
-            this.meanList.add(value);
+            stats.add(value);
 
-            ((TextView)mean.getChildAt(1)).setText(String.format(" %s", getFormatedString(calcMean())));
-            ((TextView)median.getChildAt(1)).setText(String.format(" %s", getFormatedString(calcMedian())));
-            ((TextView)max.getChildAt(1)).setText(String.format(" %s", getFormatedString(calcMax())));
-            ((TextView)min.getChildAt(1)).setText(String.format(" %s", getFormatedString(calcMin())));
+            ((TextView)mean.getChildAt(1)).setText(String.format(" %s", getFormatedString(stats.getMean())));
+            ((TextView)median.getChildAt(1)).setText(String.format(" %s", getFormatedString(stats.getMedian())));
+            ((TextView)max.getChildAt(1)).setText(String.format(" %s", getFormatedString(stats.getMax())));
+            ((TextView)min.getChildAt(1)).setText(String.format(" %s", getFormatedString(stats.getMin())));
             ((TextView)last.getChildAt(1)).setText(String.format(" %s", getFormatedString(value)));
         }
 
-        public ArrayList<Double> getMeanList() {
-            return meanList;
+        public RunningStats getStats() {
+            return stats;
         }
         public void setMaxValueSum(double maxValueSum) {
             this.maxValueSum = maxValueSum;
@@ -195,10 +178,6 @@ public class Metric {
             return minValueSum;
         }
 
-        public void setMeanList(ArrayList<Double> meanList) {
-            this.meanList = meanList;
-        }
-
         public LinearLayout getMean() {
             return mean;
         }
@@ -249,7 +228,7 @@ public class Metric {
         }
 
         public void resetMetric(){
-            meanList.clear();
+            stats.reset();
             this.maxValueSum = Double.MIN_VALUE;
             this.minValueSum = Double.MAX_VALUE;
         }
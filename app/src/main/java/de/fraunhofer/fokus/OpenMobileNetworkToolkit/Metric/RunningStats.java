@@ -0,0 +1,168 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric;
+
+import java.util.Arrays;
+
+/**
+ * Mean, median, max, min and last of a series of samples, kept up to date as samples are added, without
+ * any UI. {@link Metric} shows them in tiles, the monitors use this directly.
+ * <p>
+ * Mean, max, min and last are running values, so {@link #add(double)} and reading them is O(1). The
+ * median is kept with two heaps of primitive doubles, the lower half in a max-heap and the upper half in
+ * a min-heap, so adding is O(log n) and reading it O(1). It's the sample at index {@code count / 2} of
+ * the sorted samples, the upper one of the two middle samples for an even count, as it always was.
+ * <p>
+ * Everything is 0 without samples. Not thread safe.
+ */
+public class RunningStats {
+    private final DoubleHeap lower = new DoubleHeap(true);
+    private final DoubleHeap upper = new DoubleHeap(false);
+    private int count = 0;
+    private double sum = 0;
+    private double sumCompensation = 0;
+    private double max = 0;
+    private double min = 0;
+    private double last = 0;
+
+    public void add(double value) {
+        if (count == 0) {
+            max = value;
+            min = value;
+        } else {
+            max = Math.max(max, value);
+            min = Math.min(min, value);
+        }
+        last = value;
+        addToSum(value);
+        count++;
+
+        if (upper.isEmpty() || Double.compare(value, upper.peek()) >= 0) {
+            upper.push(value);
+        } else {
+            lower.push(value);
+        }
+        // the lower half holds count / 2 samples, so the median is the smallest of the upper half
+        if (lower.size() > count / 2) {
+            upper.push(lower.pop());
+        } else if (upper.size() > count - count / 2) {
+            lower.push(upper.pop());
+        }
+    }
+
+    /**
+     * Kahan summation, so the mean matches summing all samples at once as closely as it did
+     */
+    private void addToSum(double value) {
+        double y = value - sumCompensation;
+        double t = sum + y;
+        sumCompensation = (t - sum) - y;
+        sum = t;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    public double getMedian() {
+        return count == 0 ? 0 : upper.peek();
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    public void reset() {
+        lower.clear();
+        upper.clear();
+        count = 0;
+        sum = 0;
+        sumCompensation = 0;
+        max = 0;
+        min = 0;
+        last = 0;
+    }
+
+    /**
+     * A binary heap of doubles, ordered like {@link Double#compare(double, double)}
+     */
+    private static final class DoubleHeap {
+        private final boolean maxHeap;
+        private double[] values = new double[16];
+        private int size = 0;
+
+        DoubleHeap(boolean maxHeap) {
+            this.maxHeap = maxHeap;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double peek() {
+            return values[0];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * @return whether a belongs closer to the top than b
+         */
+        private boolean above(double a, double b) {
+            int c = Double.compare(a, b);
+            return maxHeap ? c > 0 : c < 0;
+        }
+
+        void push(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!above(value, values[parent])) {
+                    break;
+                }
+                values[i] = values[parent];
+                i = parent;
+            }
+            values[i] = value;
+        }
+
+        double pop() {
+            double top = values[0];
+            double value = values[--size];
+            int i = 0;
+            int half = size / 2;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && above(values[child + 1], values[child])) {
+                    child++;
+                }
+                if (!above(values[child], value)) {
+                    break;
+                }
+                values[i] = values[child];
+                i = child;
+            }
+            values[i] = value;
+            return top;
+        }
+    }
+}
@@ -42,13 +42,14 @@ import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.DataProvider;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.GlobalVars;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnection;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.InfluxdbConnections;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolWriter;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Ping.PingInformations.PingInformation;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SPType;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SharedPreferencesGrouper;
 
 public class PingService extends Service {
     private static final String TAG = "PingService";
-    private FileOutputStream ping_stream;
+    private LineProtocolWriter ping_writer;
     private Handler pingLogging;
     private HandlerThread pingLoggingHandleThread;
     private WorkManager wm;
@@ -123,7 +124,7 @@ public class PingService extends Service {
 
         // get an output stream
         try {
-            ping_stream = new FileOutputStream(logfile);
+            ping_writer = new LineProtocolWriter(new FileOutputStream(logfile));
         } catch (FileNotFoundException e) {
             Toast.makeText(context, "could not create output stream", Toast.LENGTH_SHORT).show();
             CloudCityLogger.e(TAG, "setupPing: could not create output stream", e);
@@ -146,9 +147,12 @@ public class PingService extends Service {
 
                 Point point = pi.getPoint();
                 point.addTags(dp.getTagsMap());
-                CloudCityLogger.d(TAG, "propertyChange: "+point.toLineProtocol());
+                String line = point.toLineProtocol();
+                CloudCityLogger.d(TAG, "propertyChange: "+line);
                 try {
-                    ping_stream.write((point.toLineProtocol() + "\n").getBytes());
+                    // flush every line, pings are rare and the file should always be up to date
+                    ping_writer.writeLine(line);
+                    ping_writer.flush();
                 } catch (IOException e) {
                     CloudCityLogger.e(TAG,e.toString(), e);
                 }
@@ -215,7 +219,7 @@ public class PingService extends Service {
                             return;
                         case CANCELLED:
                             try {
-                                ping_stream.close();
+                                ping_writer.close();
                             } catch (IOException e) {
                                 CloudCityLogger.e(TAG,e.toString(), e);
                             }
@@ -247,7 +251,7 @@ public class PingService extends Service {
             pingLoggingHandleThread = null;
         }
         try {
-            if (ping_stream != null) ping_stream.close();
+            if (ping_writer != null) ping_writer.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -20,6 +20,7 @@ import com.google.android.material.textview.MaterialTextView;
 import java.util.List;
 import java.util.Objects;
 
+import cloudcity.util.FixedRateScheduler;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.CellInformations.CDMAInformation;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.CellInformations.CellInformation;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.DataProvider.CellInformations.GSMInformation;
@@ -34,7 +35,7 @@ public class QuickFragment extends Fragment {
     private DataProvider dp;
     private Context context;
     private SharedPreferencesGrouper spg;
-    private Handler updateUIHandler;
+    private FixedRateScheduler updateUIScheduler;
     private LinearLayout mainLL;
     private static final int TEXT_SIZE_LARGE = 20;
     private static final int TEXT_SIZE_MEDIUM = 16;
@@ -53,7 +54,8 @@ public class QuickFragment extends Fragment {
         GlobalVars gv = GlobalVars.getInstance();
         dp = gv.get_dp();
         spg = SharedPreferencesGrouper.getInstance(context);
-        updateUIHandler = new Handler(Objects.requireNonNull(Looper.myLooper()));
+        updateUIScheduler = new FixedRateScheduler("QuickFragmentUI",
+                new Handler(Objects.requireNonNull(Looper.myLooper())), 500, true, updateUI);
     }
 
 
@@ -342,7 +344,6 @@ public class QuickFragment extends Fragment {
                             .forEach(cellInformation -> addCellInformationToView(cellInformation));
                 }
             }
-            updateUIHandler.postDelayed(updateUI, 500);
         }
     };
 
@@ -351,10 +352,16 @@ public class QuickFragment extends Fragment {
                              Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_quick, container, false);
         mainLL = view.findViewById(R.id.quick_fragment);
-        updateUIHandler.postDelayed(updateUI, 500);
+        updateUIScheduler.start();
         return view;
     }
 
+    @Override
+    public void onDestroyView() {
+        updateUIScheduler.stop();
+        super.onDestroyView();
+    }
+
     public String getSafeString(@StringRes int resId) {
         if (context == null) {
             return "NOT AVAILABLE AT THE MOMENT";
@@ -11,12 +11,16 @@ package de.fraunhofer.fokus.OpenMobileNetworkToolkit.SettingPreferences;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.text.InputType;
+import android.widget.Toast;
 
+import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreferenceCompat;
 
 import cloudcity.util.CloudCityLogger;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging.BinaryLogExportWorker;
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.LoggingService;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SPType;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.Preferences.SharedPreferencesGrouper;
 import de.fraunhofer.fokus.OpenMobileNetworkToolkit.R;
@@ -37,10 +41,22 @@ public class LoggingSettingsFragment extends PreferenceFragmentCompat
         enable_influx_switch = findPreference("enable_influx");
 
 
-        androidx.preference.EditTextPreference editTextPreference =
-            getPreferenceManager().findPreference("logging_interval");
-        editTextPreference.setOnBindEditTextListener(
-            editText -> editText.setInputType(InputType.TYPE_CLASS_NUMBER));
+        for (String key : new String[]{"logging_interval", "local_file_max_size_mb", "local_file_max_age_min",
+            "cloud_city_batch_events", "cloud_city_batch_seconds"}) {
+            androidx.preference.EditTextPreference editTextPreference =
+                getPreferenceManager().findPreference(key);
+            editTextPreference.setOnBindEditTextListener(
+                editText -> editText.setInputType(InputType.TYPE_CLASS_NUMBER));
+        }
+
+        Preference uploadBinaryLogs = findPreference("upload_local_binary_logs");
+        if (uploadBinaryLogs != null) {
+            uploadBinaryLogs.setOnPreferenceClickListener(preference -> {
+                int logs = BinaryLogExportWorker.uploadAll(requireContext(), LoggingService.getLocalLogDirectory());
+                Toast.makeText(requireContext(), "uploading " + logs + " binary logs", Toast.LENGTH_SHORT).show();
+                return true;
+            });
+        }
     }
 
     @Override
@@ -0,0 +1,124 @@
+package cloudcity.networking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import okhttp3.Headers;
+
+public class UploadCircuitBreakerTest {
+
+    private long now = 0;
+
+    // no jitter: every delay is exactly half the backoff
+    private final UploadCircuitBreaker breaker = new UploadCircuitBreaker(() -> now, new Random() {
+        @Override
+        public double nextDouble() {
+            return 0;
+        }
+    });
+
+    private void fail() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+    }
+
+    @Test
+    public void failures_backOffExponentially() {
+        fail();
+        assertEquals(UploadCircuitBreaker.BASE_DELAY_MS / 2, breaker.getRemainingMillis());
+        assertFalse(breaker.tryAcquire());
+
+        now += breaker.getRemainingMillis();
+        fail();
+        assertEquals(UploadCircuitBreaker.BASE_DELAY_MS, breaker.getRemainingMillis());
+
+        now += breaker.getRemainingMillis();
+        assertTrue(breaker.tryAcquire());
+        breaker.recordResponse(200, Headers.of());
+        assertEquals(0, breaker.getRemainingMillis());
+        assertEquals(UploadCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getShortCircuited());
+    }
+
+    @Test
+    public void consecutiveFailures_openAndProbe() {
+        for (int i = 0; i < UploadCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            now += breaker.getRemainingMillis();
+            fail();
+        }
+        assertEquals(UploadCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpened());
+
+        now += breaker.getRemainingMillis();
+        assertTrue(breaker.tryAcquire());
+        assertEquals(UploadCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // only the probe goes out
+        assertFalse(breaker.tryAcquire());
+
+        breaker.recordResponse(503, Headers.of());
+        assertEquals(UploadCircuitBreaker.State.OPEN, breaker.getState());
+
+        now += breaker.getRemainingMillis();
+        assertTrue(breaker.tryAcquire());
+        breaker.recordResponse(204, Headers.of());
+        assertEquals(UploadCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+        assertEquals(1, breaker.getOpened());
+    }
+
+    @Test
+    public void lostProbe_isReplacedAfterTimeout() {
+        for (int i = 0; i < UploadCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            now += breaker.getRemainingMillis();
+            fail();
+        }
+        now += breaker.getRemainingMillis();
+        assertTrue(breaker.tryAcquire());
+
+        now += UploadCircuitBreaker.PROBE_TIMEOUT_MS - 1;
+        assertFalse(breaker.tryAcquire());
+        now += 1;
+        assertTrue(breaker.tryAcquire());
+        assertEquals(UploadCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.recordResponse(200, Headers.of());
+        assertEquals(UploadCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void clientErrors_dontCountAsFailures() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordResponse(400, Headers.of());
+        assertEquals(0, breaker.getFailures());
+        assertEquals(0, breaker.getRemainingMillis());
+    }
+
+    @Test
+    public void authErrors_openTheBreaker() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordResponse(401, Headers.of());
+        assertEquals(UploadCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(UploadCircuitBreaker.MAX_DELAY_MS, breaker.getRemainingMillis());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.reset();
+        assertEquals(UploadCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void retryAfter_isHonored() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordResponse(429, Headers.of("Retry-After", "120"));
+        assertEquals(120_000, breaker.getRemainingMillis());
+
+        assertEquals(0, UploadCircuitBreaker.retryAfterMillis(Headers.of("Retry-After", "soon"), 0));
+        assertEquals(30_000, UploadCircuitBreaker.retryAfterMillis(
+                Headers.of("Retry-After", "Thu, 01 Jan 1970 00:00:30 GMT"), 0));
+    }
+}
@@ -0,0 +1,60 @@
+package cloudcity.networking.models;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import cloudcity.networking.CloudCityGson;
+
+public class NetworkModelTypeAdapterFactoryTest {
+
+    private static MeasurementsModel measurements() {
+        MeasurementsModel measurements = new MeasurementsModel();
+        measurements.setRsrp(-95);
+        measurements.setRsrq(-11);
+        measurements.setSsrsrp(-88);
+        measurements.setSssinr(17);
+        measurements.setCellType(3);
+        return measurements;
+    }
+
+    @Test
+    public void request_matchesReflection() {
+        NetworkDataModelRequest request = new NetworkDataModelRequest();
+        request.add(new NetworkDataModel(52.5251, 13.3694, measurements()));
+        request.add(new NetworkDataModel(-33.8688, 151.2093, new MeasurementsModel()));
+        request.add(new NetworkDataModel(1.0E-7, 180.0, null));
+
+        assertEquals(new Gson().toJson(request), CloudCityGson.get().toJson(request));
+    }
+
+    @Test
+    public void emptyRequest_matchesReflection() {
+        assertEquals(new Gson().toJson(new NetworkDataModelRequest()), CloudCityGson.get().toJson(new NetworkDataModelRequest()));
+        assertEquals(new Gson().toJson(new NetworkDataModelRequest(null)), CloudCityGson.get().toJson(new NetworkDataModelRequest(null)));
+    }
+
+    @Test
+    public void extendedCellInfo_matchesReflection() throws IOException {
+        CellInfoModel cell = new CellInfoModel();
+        cell.setEarfcn(1300);
+        cell.setPci(42);
+        cell.setCellId(123456789L);
+        cell.seteNodeBId(482253);
+        ExtendedCellInfoModel extended = new ExtendedCellInfoModel(measurements(), cell);
+
+        StringWriter written = new StringWriter();
+        extended.writeJson(new JsonWriter(written));
+        assertEquals(new Gson().toJson(extended), written.toString());
+
+        written = new StringWriter();
+        cell.writeJson(new JsonWriter(written));
+        assertEquals(new Gson().toJson(cell), written.toString());
+    }
+}
@@ -0,0 +1,85 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.influxdb.client.domain.WritePrecision;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InfluxSpillLogTest {
+
+    private static List<String> records(int from, int to) {
+        List<String> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add("m,t=a v=" + i + "i " + (1700000000000L + i));
+        }
+        return records;
+    }
+
+    private static List<String> replayAll(InfluxSpillLog log, int maxLines) throws IOException {
+        List<String> replayed = new ArrayList<>();
+        while (log.replay(maxLines, (precision, batch) -> {
+            assertEquals(WritePrecision.MS, precision);
+            replayed.addAll(batch);
+        }) > 0) {
+            // keep going until it's empty
+        }
+        return replayed;
+    }
+
+    @Test
+    public void replay_keepsOrderAcrossSegmentsAndReopen() throws IOException {
+        File dir = Files.createTempDirectory("spill").toFile();
+        InfluxSpillLog log = new InfluxSpillLog(dir, 256, 1024 * 1024);
+        log.appendRecords(WritePrecision.MS, records(0, 20));
+        log.appendRecords(WritePrecision.MS, records(20, 35));
+        assertFalse(log.isEmpty());
+
+        List<String> first = new ArrayList<>();
+        log.replay(7, (precision, batch) -> first.addAll(batch));
+        assertEquals(records(0, 7), first);
+        log.close();
+
+        // the partly replayed segment is replayed again from its start after reopening
+        InfluxSpillLog reopened = new InfluxSpillLog(dir, 256, 1024 * 1024);
+        reopened.appendRecords(WritePrecision.MS, records(35, 40));
+        List<String> rest = replayAll(reopened, 6);
+        assertEquals(records(0, 40), rest);
+        assertTrue(reopened.isEmpty());
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void failingConsumer_getsTheSameLinesAgain() throws IOException {
+        InfluxSpillLog log = new InfluxSpillLog(Files.createTempDirectory("spill").toFile(), 1024, 1024 * 1024);
+        log.appendRecords(WritePrecision.MS, records(0, 10));
+        try {
+            log.replay(5, (precision, batch) -> {
+                throw new IllegalStateException("write API closed");
+            });
+        } catch (IllegalStateException expected) {
+            // the lines stay in the log
+        }
+        assertEquals(records(0, 10), replayAll(log, 5));
+    }
+
+    @Test
+    public void full_dropsOldestSegments() throws IOException {
+        InfluxSpillLog log = new InfluxSpillLog(Files.createTempDirectory("spill").toFile(), 100, 300);
+        for (int i = 0; i < 20; i++) {
+            log.appendRecords(WritePrecision.MS, records(i * 3, i * 3 + 3));
+        }
+        assertTrue(log.getDroppedSegments() > 0);
+        List<String> replayed = replayAll(log, 100);
+        // what's left is the newest lines, still in order
+        assertEquals(records(60 - replayed.size(), 60), replayed);
+    }
+}
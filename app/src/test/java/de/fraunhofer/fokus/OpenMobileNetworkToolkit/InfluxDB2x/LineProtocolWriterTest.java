@@ -0,0 +1,86 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class LineProtocolWriterTest {
+
+    private static byte[] expected(String... lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] written(int bufferSize, String... lines) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LineProtocolWriter writer = new LineProtocolWriter(out, bufferSize)) {
+            for (String line : lines) {
+                writer.writeLine(line);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void writeLine_matchesStringGetBytes() throws IOException {
+        String[] lines = {
+                "ascii,tag=value field=1i 1700000000000",
+                "",
+                "umlaut,ort=München field=\"äöü\" 1",
+                "cjk,name=中文 field=2.5",
+                "emoji,e=📶 field=true",
+                "unpaired,a=\ud83d,b=\udcf6 field=1i",
+        };
+        assertArrayEquals(expected(lines), written(64 * 1024, lines));
+    }
+
+    @Test
+    public void writeLine_smallBufferSplitsCorrectly() throws IOException {
+        String[] lines = {
+                "emoji,e=📶📶 field=\"中\" 1",
+                "second line",
+        };
+        for (int bufferSize = 4; bufferSize < 16; bufferSize++) {
+            assertArrayEquals("bufferSize " + bufferSize, expected(lines), written(bufferSize, lines));
+        }
+    }
+
+    @Test
+    public void write_pointMatchesToLineProtocol() throws IOException {
+        Point point = new Point("test measurement")
+                .addTag("with space", "a,b=c")
+                .addField("double", 1.25)
+                .addField("long", 42L)
+                .addField("string", "quote \" and \\")
+                .time(1700000000123L, WritePrecision.MS);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LineProtocolWriter writer = new LineProtocolWriter(out)) {
+            writer.write(point);
+        }
+
+        assertArrayEquals((point.toLineProtocol() + "\n").getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void getBytesWritten_countsOnlyFlushedBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LineProtocolWriter writer = new LineProtocolWriter(out);
+        writer.writeLine("abc");
+        assertEquals(0, writer.getBytesWritten());
+        writer.flush();
+        assertEquals(4, writer.getBytesWritten());
+        assertEquals(4, out.size());
+    }
+}
@@ -0,0 +1,79 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Logging;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.fraunhofer.fokus.OpenMobileNetworkToolkit.InfluxDB2x.LineProtocolParser;
+
+public class BinaryLogRoundTripTest {
+
+    private static final String[] LINES = {
+            "Cell_Information,cell=1,type=NR rsrp=-95.5,rsrq=-11.0,pci=42i,registered=true 1700000000000",
+            "Cell_Information,cell=2,type=LTE rsrp=-101.25,rsrq=-14.5,pci=7i,registered=false 1700000000000",
+            "Location,provider=gps latitude=52.5251,longitude=13.3694,altitude=34.0 1700000001000",
+            "Cell_Information,cell=1,type=NR rsrp=-96.0,rsrq=-11.0,pci=42i,registered=true 1700000001000",
+            "notes,device=a\\ b text=\"say \\\"hi\\\"\",n=-9223372036854775808i 1699999999999",
+            "no_time value=1.0E-300",
+    };
+
+    private static byte[] write(String[] lines, int flushEvery) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(out)) {
+            for (int i = 0; i < lines.length; i++) {
+                writer.writeLine(lines[i]);
+                if ((i + 1) % flushEvery == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<LineProtocolParser.Line> read(byte[] log) throws IOException {
+        List<LineProtocolParser.Line> lines = new ArrayList<>();
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(log))) {
+            reader.forEachLine(lines::add);
+        }
+        return lines;
+    }
+
+    private static void assertSameLine(String expected, LineProtocolParser.Line actual) {
+        LineProtocolParser.Line line = LineProtocolParser.parse(expected);
+        assertEquals(line.measurement, actual.measurement);
+        assertEquals(line.tagKeys, actual.tagKeys);
+        assertEquals(line.tagValues, actual.tagValues);
+        assertEquals(line.fieldKeys, actual.fieldKeys);
+        assertEquals(line.fieldTypes, actual.fieldTypes);
+        assertEquals(line.fieldValues, actual.fieldValues);
+        assertEquals(line.time, actual.time);
+    }
+
+    @Test
+    public void roundTrip_keepsLinesInOrder() throws IOException {
+        for (int flushEvery : new int[]{1, 2, LINES.length}) {
+            List<LineProtocolParser.Line> lines = read(write(LINES, flushEvery));
+            assertEquals(LINES.length, lines.size());
+            for (int i = 0; i < LINES.length; i++) {
+                assertSameLine(LINES[i], lines.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void truncatedLastBlock_keepsEarlierBlocks() throws IOException {
+        byte[] log = write(LINES, 3);
+        List<LineProtocolParser.Line> lines = read(Arrays.copyOf(log, log.length - 3));
+        assertEquals(3, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertSameLine(LINES[i], lines.get(i));
+        }
+    }
+}
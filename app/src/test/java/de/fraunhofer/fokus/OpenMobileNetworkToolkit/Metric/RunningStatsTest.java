@@ -0,0 +1,76 @@
+package de.fraunhofer.fokus.OpenMobileNetworkToolkit.Metric;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class RunningStatsTest {
+
+    /**
+     * The median as Metric computed it from its sorted list of samples
+     */
+    private static double sortedListMedian(ArrayList<Double> samples) {
+        ArrayList<Double> sorted = new ArrayList<>(samples);
+        sorted.sort(Double::compareTo);
+        return sorted.isEmpty() ? 0 : sorted.get(sorted.size() / 2);
+    }
+
+    private static double streamMean(ArrayList<Double> samples) {
+        return samples.isEmpty() ? 0 : samples.stream().mapToDouble(a -> a).sum() / samples.size();
+    }
+
+    @Test
+    public void empty_isAllZero() {
+        RunningStats stats = new RunningStats();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getMean(), 0);
+        assertEquals(0, stats.getMedian(), 0);
+        assertEquals(0, stats.getMax(), 0);
+        assertEquals(0, stats.getMin(), 0);
+        assertEquals(0, stats.getLast(), 0);
+    }
+
+    @Test
+    public void median_isTheUpperMiddleSample() {
+        RunningStats stats = new RunningStats();
+        stats.add(4);
+        assertEquals(4, stats.getMedian(), 0);
+        stats.add(1);
+        assertEquals(4, stats.getMedian(), 0);
+        stats.add(3);
+        assertEquals(3, stats.getMedian(), 0);
+        stats.add(2);
+        assertEquals(3, stats.getMedian(), 0);
+        assertEquals(2, stats.getLast(), 0);
+    }
+
+    @Test
+    public void matchesTheSortedList() {
+        Random random = new Random(42);
+        RunningStats stats = new RunningStats();
+        ArrayList<Double> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // few distinct values, so duplicates of the median are covered too
+            double value = i % 3 == 0 ? random.nextInt(10) : random.nextGaussian() * 1e8;
+            stats.add(value);
+            samples.add(value);
+
+            assertEquals(i + 1, stats.getCount());
+            assertEquals(sortedListMedian(samples), stats.getMedian(), 0);
+            assertEquals(streamMean(samples), stats.getMean(), 1e-6);
+            assertEquals(samples.stream().mapToDouble(a -> a).max().getAsDouble(), stats.getMax(), 0);
+            assertEquals(samples.stream().mapToDouble(a -> a).min().getAsDouble(), stats.getMin(), 0);
+            assertEquals(value, stats.getLast(), 0);
+        }
+
+        stats.reset();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getMedian(), 0);
+        stats.add(-5);
+        assertEquals(-5, stats.getMin(), 0);
+        assertEquals(-5, stats.getMax(), 0);
+    }
+}